@@ -0,0 +1,103 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * The game's side of the JMH benchmarks (see benchmarks.HotPaths),
+ * in the default package with the rest of the game.
+ */
+public class GameHotPaths implements benchmarks.HotPaths {
+
+	private Position[] positions;
+	private Piece[] pieces;
+	private final int[] moves = new int[MoveGenerator.BUFFER_SIZE];
+	private Piece[] stepPieces;
+	private int[] stepTargets;
+	private CheckersGame[] games;
+	private File file;
+
+	public void setUpPositions(long seed, int count) {
+		positions = Benchmark.randomPositions(new Random(seed), count);
+		List<Piece> all = new ArrayList<Piece>();
+		for (Position p : positions) {
+			Piece[][] board = new Piece[8][8];
+			p.toBoard(board);
+			for (Piece[] row : board) {
+				for (Piece piece : row) {
+					if (piece != null) all.add(piece);
+				}
+			}
+		}
+		pieces = all.toArray(new Piece[0]);
+	}
+
+	public int positions() {
+		return positions.length;
+	}
+
+	public int generate(int position) {
+		return MoveGenerator.generate(positions[position], moves);
+	}
+
+	public int pieces() {
+		return pieces.length;
+	}
+
+	public boolean hasValidMove(int piece) {
+		return pieces[piece].hasValidMove();
+	}
+
+	public void setUpSteps() {
+		List<Piece> picked = new ArrayList<Piece>();
+		List<Integer> targets = new ArrayList<Integer>();
+		for (Position p : positions) {
+			int n = MoveGenerator.generateSteps(p, moves);
+			for (int i=0; i<n; i++) {
+				Piece[][] board = new Piece[8][8];
+				p.toBoard(board);
+				int from = Move.from(moves[i * Move.WIDTH]);
+				picked.add(board[Position.row(from)][Position.col(from)]);
+				targets.add(Move.to(moves[i * Move.WIDTH]));
+			}
+		}
+		stepPieces = picked.toArray(new Piece[0]);
+		stepTargets = new int[targets.size()];
+		for (int i=0; i<stepTargets.length; i++) stepTargets[i] = targets.get(i);
+	}
+
+	public int steps() {
+		return stepPieces.length;
+	}
+
+	public boolean move(int step) {
+		Piece piece = stepPieces[step];
+		int row = Position.row(stepTargets[step]), col = Position.col(stepTargets[step]);
+		if (!piece.isValidMove(row, col)) return false;
+		piece.move(row, col);
+		return true;
+	}
+
+	public void setUpGames(boolean draw) throws IOException {
+		games = new CheckersGame[positions.length];
+		for (int i=0; i<games.length; i++) {
+			games[i] = new CheckersGame();
+			if (draw && i == 0) games[i].initialize();
+			games[i].setPosition(positions[i]);
+		}
+		file = File.createTempFile("benchmark", ".dat");
+		file.deleteOnExit();
+	}
+
+	public int games() {
+		return games.length;
+	}
+
+	public void drawConfiguration(int game) {
+		StdDraw.clear();
+		games[game].drawConfiguration();
+	}
+
+	public void saveLoad(int game) throws IOException {
+		games[game].snapshot().save(file);
+		games[game].restore(Snapshot.load(file));
+	}
+}
@@ -0,0 +1,67 @@
+package benchmarks;
+
+import java.io.IOException;
+
+/**
+ * The hot paths of the game, as the benchmarks call them. The game's
+ * classes are in the default package, which JMH benchmarks cannot be
+ * in and named packages cannot import, so the benchmarks reach them
+ * through this interface. GameHotPaths, in the default package,
+ * implements it; with one implementation loaded, the JIT inlines the
+ * calls.
+ *
+ * Everything a call needs is built by the setUp methods, so a call does
+ * only the operation it is named after.
+ */
+public interface HotPaths {
+
+	/** Seed of the random playouts, the same as the Benchmark class uses */
+	long SEED = 20161016L;
+
+	/**
+	 * Random positions reached by playouts from the start, each on a
+	 * board of Pieces.
+	 */
+	void setUpPositions(long seed, int count);
+
+	/** Number of positions */
+	int positions();
+
+	/** MoveGenerator.generate() on a position, returns the number of moves */
+	int generate(int position);
+
+	/** Number of pieces on all the boards */
+	int pieces();
+
+	/** Piece.hasValidMove() for one piece */
+	boolean hasValidMove(int piece);
+
+	/** Fresh boards with one piece picked per legal step, since moving changes the board */
+	void setUpSteps();
+
+	/** Number of steps picked by setUpSteps() */
+	int steps();
+
+	/** Piece.isValidMove() then Piece.move() for one step, returns whether it moved */
+	boolean move(int step);
+
+	/**
+	 * One CheckersGame per position, and a save file.
+	 * @param draw whether to initialize StdDraw, which the game draws into
+	 */
+	void setUpGames(boolean draw) throws IOException;
+
+	/** Number of games */
+	int games();
+
+	/** StdDraw.clear() and CheckersGame.drawConfiguration() into the offscreen buffer */
+	void drawConfiguration(int game);
+
+	/** Snapshot a game, save it, load it back and restore it */
+	void saveLoad(int game) throws IOException;
+
+	/** The implementation in the default package */
+	static HotPaths load() throws ReflectiveOperationException {
+		return (HotPaths) Class.forName("GameHotPaths").getDeclaredConstructor().newInstance();
+	}
+}
@@ -0,0 +1,44 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Piece.isValidMove() then Piece.move() for legal steps of random
+ * positions. A move changes its board, so every call moves STEPS
+ * pieces on boards built fresh, untimed, before it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class MoveBenchmark {
+
+	private static final int STEPS = 2000;
+
+	private HotPaths paths;
+
+	@Setup(Level.Trial)
+	public void setUp() throws ReflectiveOperationException {
+		paths = HotPaths.load();
+		paths.setUpPositions(HotPaths.SEED, 1000);
+	}
+
+	// a few milliseconds of moves per call, so building the boards for each is fine
+	@Setup(Level.Invocation)
+	public void setUpSteps() {
+		paths.setUpSteps();
+		if (paths.steps() < STEPS) throw new IllegalStateException("only " + paths.steps() + " steps");
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(STEPS)
+	public void move(Blackhole bh) {
+		for (int i=0; i<STEPS; i++) {
+			bh.consume(paths.move(i));
+		}
+	}
+}
@@ -0,0 +1,35 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Save and load round trips: a game's snapshot written to a real file,
+ * read back and restored, for games set up on random positions
+ * beforehand. Restoring leaves a game as it was.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class PersistenceBenchmark {
+
+	private HotPaths paths;
+	private int game;
+
+	@Setup
+	public void setUp() throws Exception {
+		paths = HotPaths.load();
+		paths.setUpPositions(HotPaths.SEED, 100);
+		paths.setUpGames(false);
+	}
+
+	@Benchmark
+	public void saveLoad() throws IOException {
+		if (++game == paths.games()) game = 0;
+		paths.saveLoad(game);
+	}
+}
@@ -0,0 +1,34 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * A full frame, CheckersGame.drawConfiguration(), drawn into StdDraw's
+ * offscreen buffer, for games set up on random positions beforehand.
+ * Runs headless.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RenderBenchmark {
+
+	private HotPaths paths;
+	private int game;
+
+	@Setup
+	public void setUp() throws Exception {
+		paths = HotPaths.load();
+		paths.setUpPositions(HotPaths.SEED, 100);
+		paths.setUpGames(true);
+	}
+
+	@Benchmark
+	public void drawConfiguration() {
+		if (++game == paths.games()) game = 0;
+		paths.drawConfiguration(game);
+	}
+}
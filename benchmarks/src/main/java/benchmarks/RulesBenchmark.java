@@ -0,0 +1,39 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Rule checks on random positions: Piece.hasValidMove() for one piece
+ * and MoveGenerator.generate() for one position per call, going round
+ * all of them in turn.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class RulesBenchmark {
+
+	private HotPaths paths;
+	private int piece, position;
+
+	@Setup
+	public void setUp() throws ReflectiveOperationException {
+		paths = HotPaths.load();
+		paths.setUpPositions(HotPaths.SEED, 1000);
+	}
+
+	@Benchmark
+	public boolean hasValidMove() {
+		if (++piece == paths.pieces()) piece = 0;
+		return paths.hasValidMove(piece);
+	}
+
+	@Benchmark
+	public int generate() {
+		if (++position == paths.positions()) position = 0;
+		return paths.generate(position);
+	}
+}
@@ -0,0 +1,365 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * Throughput benchmarks for the hot paths of the game: rule checks in
+ * Piece, the bitboard move generator, drawing a full frame or just
+ * the squares a move changed, saving
+ * and loading a game, and input events through StdDraw. Each
+ * case runs a few warmup rounds so the JIT settles, then reports the
+ * median operations per second over the measured rounds. Only the
+ * operation a case is named after is timed; boards, games and positions
+ * are set up outside the time. For forked runs with error bounds, use
+ * the JMH benchmarks in the benchmarks module.
+ *
+ * Positions are random but reproducible: they come from random
+ * playouts of a fixed seed, so runs on the same machine compare.
+ * Drawing goes to StdDraw's offscreen buffer, so the benchmark also
+ * runs with -Djava.awt.headless=true.
+ *
+ * Usage:
+ *     java Benchmark [case...]
+ *     java Benchmark smp [millis]
+ *
+ * With no arguments every case is run. The smp mode measures how
+ * ParallelSearch scales: nodes per second and depth reached for 1, 2,
+ * 4, ... threads up to the number of cores, on the same positions. Baseline figures are kept in
+ * README.md; rerun and compare after any change to the rules engine.
+ */
+public class Benchmark {
+
+	private static final int WARMUP_ROUNDS = 3;
+	private static final int MEASURED_ROUNDS = 5;
+	private static final int POSITIONS = 1000;
+	private static final long SEED = 20161016L;
+
+	/**
+	 * One benchmark case. setup() runs untimed before every round,
+	 * and a round returns the number of operations it did. A round that
+	 * has to do other work between its operations times them itself
+	 * and reports the total in nanos().
+	 */
+	interface Case {
+		default void setup() { }
+		long round();
+		/** Nanoseconds the last round spent in its operations, or -1 if all of it counts */
+		default long nanos() { return -1; }
+	}
+
+	private final Map<String, Case> cases = new LinkedHashMap<String, Case>();
+	private final Position[] positions;
+
+	public Benchmark() {
+		positions = randomPositions(new Random(SEED), POSITIONS);
+		cases.put("hasValidMove", hasValidMove());
+		cases.put("move", move());
+		cases.put("generate", this::generate);
+		cases.put("drawConfiguration", drawConfiguration());
+		cases.put("drawChanges", drawChanges());
+		cases.put("saveLoad", saveLoad());
+		cases.put("events", this::events);
+	}
+
+	/**
+	 * Positions reached by random playouts from the start,
+	 * each stopping after 0 to 40 plies.
+	 */
+	static Position[] randomPositions(Random rnd, int count) {
+		Position[] result = new Position[count];
+		int[] moves = new int[MoveGenerator.BUFFER_SIZE];
+		for (int i=0; i<count; i++) {
+			Position p = Position.start();
+			int plies = rnd.nextInt(41);
+			for (int ply=0; ply<plies; ply++) {
+				int n = MoveGenerator.generate(p, moves);
+				if (n == 0) break;
+				int m = rnd.nextInt(n) * Move.WIDTH;
+				p.apply(moves[m], moves[m + 1]);
+			}
+			result[i] = p;
+		}
+		return result;
+	}
+
+	// Piece.hasValidMove() for every piece of every position, on boards built once
+	private Case hasValidMove() {
+		return new Case() {
+			private Piece[] pieces;
+
+			public void setup() {
+				if (pieces != null) return;
+				List<Piece> all = new ArrayList<Piece>();
+				for (Position p : positions) {
+					Piece[][] board = new Piece[8][8];
+					p.toBoard(board);
+					for (Piece[] row : board) {
+						for (Piece piece : row) {
+							if (piece != null) all.add(piece);
+						}
+					}
+				}
+				pieces = all.toArray(new Piece[0]);
+			}
+
+			public long round() {
+				int found = 0;
+				for (int rep=0; rep<20; rep++) {
+					for (Piece piece : pieces) {
+						if (piece.hasValidMove()) found++;
+					}
+				}
+				blackhole(found);
+				return 20L * pieces.length;
+			}
+		};
+	}
+
+	// Piece.isValidMove() then Piece.move() for every legal step, on fresh boards
+	private Case move() {
+		return new Case() {
+			private final int[] moves = new int[MoveGenerator.BUFFER_SIZE];
+			private final List<Piece> pieces = new ArrayList<Piece>();
+			private final List<Integer> targets = new ArrayList<Integer>();
+
+			// one fresh board per step, since move() changes the board
+			public void setup() {
+				pieces.clear();
+				targets.clear();
+				for (Position p : positions) {
+					int n = MoveGenerator.generateSteps(p, moves);
+					for (int i=0; i<n; i++) {
+						Piece[][] board = new Piece[8][8];
+						p.toBoard(board);
+						int from = Move.from(moves[i * Move.WIDTH]);
+						pieces.add(board[Position.row(from)][Position.col(from)]);
+						targets.add(Move.to(moves[i * Move.WIDTH]));
+					}
+				}
+			}
+
+			public long round() {
+				for (int i=0; i<pieces.size(); i++) {
+					Piece piece = pieces.get(i);
+					int to = targets.get(i);
+					if (piece.isValidMove(Position.row(to), Position.col(to)))
+						piece.move(Position.row(to), Position.col(to));
+				}
+				return pieces.size();
+			}
+		};
+	}
+
+	// MoveGenerator.generate() on every position
+	private long generate() {
+		int[] moves = new int[MoveGenerator.BUFFER_SIZE];
+		long ops = 0;
+		int total = 0;
+		for (int rep=0; rep<1000; rep++) {
+			for (Position p : positions) {
+				total += MoveGenerator.generate(p, moves);
+				ops++;
+			}
+		}
+		blackhole(total);
+		return ops;
+	}
+
+	// CheckersGame.drawConfiguration() into the offscreen buffer, one game
+	// set up per position beforehand
+	private Case drawConfiguration() {
+		return new Case() {
+			private CheckersGame[] games;
+
+			public void setup() {
+				if (games == null) games = games(true);
+			}
+
+			public long round() {
+				for (CheckersGame game : games) {
+					StdDraw.clear();
+					game.drawConfiguration();
+				}
+				return games.length;
+			}
+		};
+	}
+
+	// games showing every tenth position, the first one initializing StdDraw if asked
+	private CheckersGame[] games(boolean draw) {
+		CheckersGame[] games = new CheckersGame[POSITIONS / 10];
+		for (int i=0; i<games.length; i++) {
+			games[i] = new CheckersGame();
+			if (draw && i == 0) games[i].initialize();
+			games[i].setPosition(positions[i * 10]);
+		}
+		return games;
+	}
+
+	// CheckersGame.drawChanges() after each move of random games; setting
+	// up the position for each move is left out of the time
+	private Case drawChanges() {
+		return new Case() {
+			private CheckersGame game;
+			private final Position[] plies = new Position[POSITIONS];
+			private long nanos;
+
+			public void setup() {
+				if (game != null) return;
+				game = new CheckersGame();
+				game.initialize();
+				Random rnd = new Random(SEED);
+				int[] moves = new int[MoveGenerator.BUFFER_SIZE];
+				Position p = Position.start();
+				for (int i=0; i<POSITIONS; i++) {
+					int n = MoveGenerator.generate(p, moves);
+					if (n == 0) {
+						p = Position.start();
+						n = MoveGenerator.generate(p, moves);
+					}
+					int m = rnd.nextInt(n) * Move.WIDTH;
+					p = new Position(p.dark(), p.light(), p.kings(), p.darkToMove());
+					p.apply(moves[m], moves[m + 1]);
+					plies[i] = p;
+				}
+			}
+
+			public long round() {
+				game.setPosition(Position.start());
+				game.drawConfiguration();
+				nanos = 0;
+				for (Position p : plies) {
+					game.setPosition(p);
+					long start = System.nanoTime();
+					game.drawChanges();
+					nanos += System.nanoTime() - start;
+				}
+				return plies.length;
+			}
+
+			public long nanos() {
+				return nanos;
+			}
+		};
+	}
+
+	// snapshot, save, load and restore a game through a real file, one game
+	// set up per position beforehand; restoring leaves each game as it was
+	private Case saveLoad() {
+		return new Case() {
+			private CheckersGame[] games;
+			private File file;
+
+			public void setup() {
+				if (games != null) return;
+				games = games(false);
+				try {
+					file = File.createTempFile("benchmark", ".dat");
+					file.deleteOnExit();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+
+			public long round() {
+				try {
+					for (CheckersGame game : games) {
+						game.snapshot().save(file);
+						game.restore(Snapshot.load(file));
+					}
+					return games.length;
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		};
+	}
+
+	// mouse clicks from a synthetic high-rate source thread through
+	// StdDraw's event queue, taken by this thread the way CheckersGame.run()
+	// takes them; the source retries when the queue is full
+	private long events() {
+		int count = 200000;
+		Thread source = new Thread(() -> {
+			for (int i=0; i<count; i++) {
+				while (!StdDraw.enqueueMouseClick(i, 0)) Thread.yield();
+			}
+		});
+		source.start();
+		for (int i=0; i<count; i++) {
+			if (StdDraw.waitForMouseClicked().getX() != i) throw new IllegalStateException("click " + i + " out of order");
+		}
+		try {
+			source.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return count;
+	}
+
+	// keeps results alive so the JIT cannot drop the work
+	private static volatile int sink;
+
+	private static void blackhole(int value) {
+		sink += value;
+	}
+
+	/** Run one case and print its median throughput */
+	public void run(String name) {
+		Case c = cases.get(name);
+		if (c == null) throw new IllegalArgumentException("unknown benchmark " + name + ", expected one of " + cases.keySet());
+		for (int i=0; i<WARMUP_ROUNDS; i++) {
+			c.setup();
+			c.round();
+		}
+		double[] rates = new double[MEASURED_ROUNDS];
+		for (int i=0; i<MEASURED_ROUNDS; i++) {
+			c.setup();
+			long start = System.nanoTime();
+			long ops = c.round();
+			long elapsed = System.nanoTime() - start;
+			if (c.nanos() >= 0) elapsed = c.nanos();
+			elapsed = Math.max(1, elapsed);
+			rates[i] = ops * 1e9 / elapsed;
+		}
+		Arrays.sort(rates);
+		System.out.printf("%-20s %,15.0f ops/s%n", name, rates[MEASURED_ROUNDS / 2]);
+	}
+
+	/**
+	 * Nodes per second of ParallelSearch for a growing number of threads.
+	 * @param millis search time per position
+	 */
+	static void smpScaling(long millis) {
+		Position[] roots = randomPositions(new Random(SEED), 8);
+		int cores = Runtime.getRuntime().availableProcessors();
+		double single = 0;
+		System.out.printf("%8s %15s %8s %10s%n", "threads", "nodes/s", "speedup", "avg depth");
+		for (int threads=1; threads<=cores; threads*=2) {
+			ParallelSearch search = new ParallelSearch(threads, 64);
+			long nodes = 0, nanos = 0, depth = 0;
+			for (Position root : roots) {
+				Search.Result r = search.search(root, millis);
+				nodes += r.nodes;
+				nanos += r.nanos;
+				depth += r.depth;
+			}
+			search.shutdown();
+			double rate = nodes * 1e9 / Math.max(1, nanos);
+			if (threads == 1) single = rate;
+			System.out.printf("%8d %,15.0f %7.2fx %10.1f%n", threads, rate, rate / single, (double) depth / roots.length);
+			if (threads < cores && threads * 2 > cores) threads = cores / 2; // always finish on all cores
+		}
+	}
+
+	public static void main(String[] args) {
+		if (args.length > 0 && args[0].equals("smp")) {
+			smpScaling(args.length > 1 ? Long.parseLong(args[1]) : 1000);
+			return;
+		}
+		Benchmark b = new Benchmark();
+		List<String> names = args.length == 0 ? new ArrayList<String>(b.cases.keySet()) : Arrays.asList(args);
+		for (String name : names) {
+			b.run(name);
+		}
+	}
+}
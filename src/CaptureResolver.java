@@ -0,0 +1,161 @@
+/**
+ * Works out every complete capture a piece can make: each multi-jump
+ * is followed to its end, along every branch, and comes out as one
+ * move in the Move encoding, with the final landing square and the
+ * mask of every piece it removes. Men jump forward, kings in all four
+ * directions, and a jump may only continue while it can capture again.
+ *
+ * Two paths that start and end on the same squares and remove the same
+ * pieces (a king going round a ring of pieces one way or the other)
+ * leave the same position behind, so they are listed once.
+ *
+ * What happens to a man that reaches the far row in the middle of a
+ * capture is up to the rules being played:
+ *
+ *     CROWN_AND_STOP       it is crowned and the move ends (checkers)
+ *     CROWN_AND_CONTINUE   it is crowned and jumps on as a king (Russian draughts)
+ *     CROWN_AT_END         it jumps on as a man, and is only crowned
+ *                          if the move ends on the far row (Brazilian, pool)
+ *
+ * A man crowned along the way that ends its move elsewhere has
+ * Move.CROWNED set in its move, so Position.apply() crowns it.
+ *
+ * Like MoveGenerator, which uses the CHECKERS resolver for its jumps,
+ * a resolver writes into a caller-supplied buffer and allocates
+ * nothing, so it is safe to share between threads.
+ */
+public final class CaptureResolver {
+
+	/** What happens to a man reaching the far row in the middle of a capture */
+	public static final int CROWN_AND_STOP = 0, CROWN_AND_CONTINUE = 1, CROWN_AT_END = 2;
+
+	/** The rules of checkers, as played by MoveGenerator */
+	public static final CaptureResolver CHECKERS = new CaptureResolver(CROWN_AND_STOP);
+
+	private final int promotion;
+
+	/**
+	 * Construct a resolver for a promotion rule.
+	 * @param promotion CROWN_AND_STOP, CROWN_AND_CONTINUE or CROWN_AT_END
+	 */
+	public CaptureResolver(int promotion) {
+		if (promotion < CROWN_AND_STOP || promotion > CROWN_AT_END)
+			throw new IllegalArgumentException("no such promotion rule: " + promotion);
+		this.promotion = promotion;
+	}
+
+	/** The promotion rule */
+	public int promotion() {
+		return promotion;
+	}
+
+	/**
+	 * Fill moves with every complete capture for the side to move.
+	 * @param moves buffer of at least MoveGenerator.BUFFER_SIZE ints
+	 * @return number of moves written, 0 if no capture is available
+	 */
+	public int resolve(Position p, int[] moves) {
+		boolean dark = p.darkToMove;
+		int own = dark ? p.dark : p.light;
+		int opp = dark ? p.light : p.dark;
+		int empty = ~(p.dark | p.light);
+		// only pieces with a first jump, found for all of them at once,
+		// walking back from the empty landing squares over the opponents
+		int up = dark ? own : own & p.kings;
+		int down = dark ? own & p.kings : own;
+		int jumpers = (up & (MoveGenerator.downRight(MoveGenerator.downRight(empty) & opp)
+						| MoveGenerator.downLeft(MoveGenerator.downLeft(empty) & opp)))
+				| (down & (MoveGenerator.upRight(MoveGenerator.upRight(empty) & opp)
+						| MoveGenerator.upLeft(MoveGenerator.upLeft(empty) & opp)));
+		int n = 0;
+		while (jumpers != 0) {
+			int from = Integer.numberOfTrailingZeros(jumpers);
+			jumpers &= jumpers - 1;
+			int bit = 1 << from;
+			// the jumping piece leaves its square, so it may land there again
+			n = jumps(moves, n, n, from, bit, 0, empty | bit, opp, (p.kings & bit) != 0, false, dark);
+		}
+		return n;
+	}
+
+	/**
+	 * Fill moves with every complete capture of the piece on a square,
+	 * whether or not it belongs to the side to move.
+	 * @param from square of the capturing piece
+	 * @return number of moves written, 0 if it cannot capture
+	 */
+	public int resolve(Position p, int from, int[] moves) {
+		return resolve(p, from, moves, 0);
+	}
+
+	// append the captures of the piece on from to the n moves in the buffer
+	private int resolve(Position p, int from, int[] moves, int n) {
+		int bit = 1 << from;
+		boolean dark = (p.dark & bit) != 0;
+		if (!dark && (p.light & bit) == 0) return n;
+		int opp = dark ? p.light : p.dark;
+		// the jumping piece leaves its square, so it may land there again
+		int empty = ~(p.dark | p.light) | bit;
+		return jumps(moves, n, n, from, bit, 0, empty, opp, (p.kings & bit) != 0, false, dark);
+	}
+
+	// depth-first search of the capture sequences continuing from square cur;
+	// first is where this piece's moves begin in the buffer
+	private int jumps(int[] moves, int first, int n, int from, int cur, int captured,
+			int empty, int opp, boolean king, boolean crowned, boolean dark) {
+		boolean extended = false;
+		if (king || dark) {
+			int over = MoveGenerator.upLeft(cur) & opp & ~captured;
+			if (over != 0 && (MoveGenerator.upLeft(over) & empty) != 0) {
+				extended = true;
+				n = land(moves, first, n, from, MoveGenerator.upLeft(over), captured | over, empty, opp, king, crowned, dark);
+			}
+			over = MoveGenerator.upRight(cur) & opp & ~captured;
+			if (over != 0 && (MoveGenerator.upRight(over) & empty) != 0) {
+				extended = true;
+				n = land(moves, first, n, from, MoveGenerator.upRight(over), captured | over, empty, opp, king, crowned, dark);
+			}
+		}
+		if (king || !dark) {
+			int over = MoveGenerator.downLeft(cur) & opp & ~captured;
+			if (over != 0 && (MoveGenerator.downLeft(over) & empty) != 0) {
+				extended = true;
+				n = land(moves, first, n, from, MoveGenerator.downLeft(over), captured | over, empty, opp, king, crowned, dark);
+			}
+			over = MoveGenerator.downRight(cur) & opp & ~captured;
+			if (over != 0 && (MoveGenerator.downRight(over) & empty) != 0) {
+				extended = true;
+				n = land(moves, first, n, from, MoveGenerator.downRight(over), captured | over, empty, opp, king, crowned, dark);
+			}
+		}
+		if (!extended && captured != 0) {
+			n = add(moves, first, n, Move.encode(from, Integer.numberOfTrailingZeros(cur)) | (crowned ? Move.CROWNED : 0), captured);
+		}
+		return n;
+	}
+
+	// a jump lands on square to: crown the man there if the rule says so, and keep jumping
+	private int land(int[] moves, int first, int n, int from, int to, int captured,
+			int empty, int opp, boolean king, boolean crowned, boolean dark) {
+		if (!king && (to & (dark ? Position.DARK_KING_ROW : Position.LIGHT_KING_ROW)) != 0) {
+			if (promotion == CROWN_AND_STOP) {
+				return add(moves, first, n, Move.encode(from, Integer.numberOfTrailingZeros(to)), captured);
+			} else if (promotion == CROWN_AND_CONTINUE) {
+				// the king row crowns it anyway if the move ends here
+				return jumps(moves, first, n, from, to, captured, empty, opp, true, true, dark);
+			}
+		}
+		return jumps(moves, first, n, from, to, captured, empty, opp, king, crowned, dark);
+	}
+
+	// add a move unless this piece already has one with the same outcome
+	static int add(int[] moves, int first, int n, int move, int captured) {
+		for (int i=first; i<n; i++) {
+			if (moves[i * Move.WIDTH] == move && moves[i * Move.WIDTH + 1] == captured) return n;
+		}
+		int i = n * Move.WIDTH;
+		moves[i] = move;
+		moves[i + 1] = captured;
+		return n + 1;
+	}
+}
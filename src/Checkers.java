@@ -1,10 +1,57 @@
 /**
  * This simple class creates an instance of a checkers game and 
  * launches it by calling its run method.
+ * 
+ * Usage: java Checkers [-computer dark|light] [-time millis] [-threads n]
+ *                     [-tablebase file] [-book file] [-weights file]
+ *        java Checkers -server [port]
+ * 
+ * With -computer, the computer plays the given side, thinking 
+ * for the given time per move (one second by default) on the 
+ * given number of threads (one by default), and looking up 
+ * endgames in the given database file (see Tablebase) and 
+ * openings in the given book (see OpeningBook), scoring positions 
+ * with the evaluation weights in the given file (see Evaluator).
+ * 
+ * With -server, no window is opened; instead many games are 
+ * hosted for clients on a local port (see GameServer).
  */
 public class Checkers {
-	public static void main(String[] args) {
-		CheckersGame g = new CheckersGame(); //Make a new application
+	public static void main(String[] args) throws Exception {
+		if (args.length > 0 && args[0].equals("-server")) {
+			GameServer.main(java.util.Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+		Boolean computer = null;
+		long millis = 1000;
+		int threads = 1;
+		String tablebase = null;
+		String book = null;
+		String weights = null;
+		for (int i=0; i<args.length; i++) {
+			if (args[i].equals("-computer") && i+1 < args.length) {
+				computer = args[++i].equals("dark");
+			} else if (args[i].equals("-time") && i+1 < args.length) {
+				millis = Long.parseLong(args[++i]);
+			} else if (args[i].equals("-threads") && i+1 < args.length) {
+				threads = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-tablebase") && i+1 < args.length) {
+				tablebase = args[++i];
+			} else if (args[i].equals("-book") && i+1 < args.length) {
+				book = args[++i];
+			} else if (args[i].equals("-weights") && i+1 < args.length) {
+				weights = args[++i];
+			}
+		}
+		CheckersGame g = new CheckersGame(computer, millis, threads); //Make a new application
+		try {
+			if (tablebase != null) g.useTablebase(Tablebase.open(new java.io.File(tablebase)));
+			if (book != null) g.useOpeningBook(OpeningBook.open(new java.io.File(book)));
+			if (weights != null) g.useEvaluator(Evaluator.open(new java.io.File(weights)));
+		} catch (java.io.IOException e) {
+			System.out.println(e);
+			System.exit(1);
+		}
 		g.run();                 //Run the application
 		System.exit(0);          //Clean exit after finished execution
 	}
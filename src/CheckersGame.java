@@ -1,10 +1,18 @@
+import java.awt.image.BufferedImage;
 import java.io.*;
 import java.util.*;
 
 /**
  * This class serves as a GUI for a checkers game,
  * which works with several instances of a class 
- * called Piece to enforce the rules of checkers.
+ * called Piece to enforce the rules of checkers 
+ * as the user clicks, and with a headless Game that 
+ * holds the position, the moves played and the end 
+ * of the game. Everything that draws is in this class.
+ * The pieces know how a piece moves; whether it may move
+ * at all, since a capture must be taken when there is one,
+ * is asked of the game, and every completed move goes 
+ * through Game.play(), so only legal moves are recorded.
  * 
  * Your task is to finish implementing the processInput
  * method and the Piece class to enforce the rules. 
@@ -19,6 +27,21 @@ import java.util.*;
  * Instance variables: The GUI maintains a board (2D array 
  * of Piece objects), current player, and current piece. 
  * 
+ * Save and load: Typing 'S' saves the whole game to game.dat 
+ * as a small binary Snapshot and exits; "Load saved game" on 
+ * the welcome screen restores it, including a multi-jump in 
+ * progress. 
+ * 
+ * Export: typing 'P' writes the game so far to game.pdn in 
+ * Portable Draughts Notation (see Pdn), which other checkers 
+ * programs and the opening book builder can read. 
+ * 
+ * Crash recovery: every completed move is also appended to 
+ * game.journal (see MoveJournal) on top of the state the game 
+ * started from. The journal is removed when the game ends or is 
+ * saved, so if it is still there at startup the last game did not 
+ * finish, and it is replayed instead of showing the welcome screen. 
+ * 
  * Construction: The Checkers class with a main method 
  * calls the GUI constructor, which initializes ivars 
  * and constructs 12 pieces per player and puts them 
@@ -29,8 +52,10 @@ import java.util.*;
  * StdDraw methods configure the canvas (See initialize().) 
  * The initial configuration is displayed, and then a loop 
  * controlling the event-driven behavior of the game begins. 
+ * The loop sleeps in StdDraw.waitForInput() until the user 
+ * clicks or types, so an idle game uses no CPU. 
  * When a user clicks the mouse, processInput() and then 
- * drawConfiguration() are called, and then gameOver() is 
+ * drawChanges() are called, and then gameOver() is 
  * checked to see whether to terminate the program.
  * 
  * Process input: Called whenever a mouse is clicked, this
@@ -41,32 +66,73 @@ import java.util.*;
  * Draw configuration: Draws 32 alternating black tiles and  
  * a yellow banner at the top or bottom indicating whose 
  * turn it is, and it iterates through all the pieces on the
- * board calling draw (implemented in the Piece class).
+ * board calling drawPiece. The tiles are drawn only once,
+ * into a layer that is copied back after that. Between 
+ * turns, drawChanges() redraws just the squares whose 
+ * piece or highlight changed since the last frame, and 
+ * the banner when the turn passes.
  * 
- * Game over: This method currently just returns false. 
- * Implement it as an extension!
+ * Game over: Each completed move is passed to the Game, 
+ * which decides when the game is over (see Game for the 
+ * rules, including draws).
  */
 public class CheckersGame {
 
 	/** Display constants */
 	private static final int CANVAS_SIZE = 600; // number of pixels
 	private static final double BANNER = 0.1; // proportion of tile for border
-	private static final int PAUSE_TIME = 16; // milliseconds 
+	private static final String CROWN_IMAGE = "crown.png"; // drawn over kings
 	private char key; //last key pressed
+	private static final String SAVE_FILE = "game.dat"; // binary snapshot, see Snapshot
+	private static final String PDN_FILE = "game.pdn"; // export, see Pdn
+	private static final String JOURNAL_FILE = "game.journal"; // moves since the game started, see MoveJournal
 
 	/** State of the application */
 	private final Piece[][] board; 
 	private boolean currentPlayer;
 	private Piece currentPiece;
 
+	/** The game behind the board, updated once per completed move */
+	private final Game game = new Game();
+	private int turnFrom = -1; // square the piece moving this turn started on
+	private int turnCaptured; // squares it has captured so far this turn
+	private final int[] legal = new int[MoveGenerator.BUFFER_SIZE]; // legal moves of the player to move
+
+	/** Computer opponent: which side it plays (null for none) and its budget */
+	private final Boolean computerPlayer;
+	private final long computerMillis;
+	private final ParallelSearch search;
+	private OpeningBook book; // consulted before searching, null for none
+	private final Random random = new Random();
+
+	// the empty board, drawn once, and what each square (y*8+x) showed in the last frame
+	private BufferedImage boardLayer;
+	private final int[] drawn = new int[64];
+	private Boolean drawnPlayer; // whose banner is showing, null before the first frame
+
+	private MoveJournal journal; // null when not journaling
+
 	/**
 	 * Constructor to initialize instance variables.
 	 */
 	public CheckersGame() {
+		this(null, 0, 1);
+	}
+
+	/**
+	 * Constructor for a game against the computer.
+	 * @param computerPlayer side played by the computer (true=dark), or null for two humans
+	 * @param computerMillis time the computer may think about each move
+	 * @param computerThreads number of threads the computer searches with
+	 */
+	public CheckersGame(Boolean computerPlayer, long computerMillis, int computerThreads) {
 		// fill board with pieces
 		board = new Piece[8][8];
 		currentPlayer = true; // dark ("true") player starts
 		currentPiece = null; // nothing selected yet
+		this.computerPlayer = computerPlayer;
+		this.computerMillis = computerMillis;
+		search = computerPlayer == null ? null : new ParallelSearch(computerThreads, Search.DEFAULT_TABLE_MB * computerThreads);
 	}
 
 	/**
@@ -82,6 +148,8 @@ public class CheckersGame {
 		StdDraw.setXscale(-BANNER, 8+BANNER);
 		StdDraw.setYscale(-BANNER, 8+BANNER);
 		StdDraw.enableDoubleBuffering();
+		// decode the crown now rather than when the first king is drawn
+		StdDraw.preloadImage(CROWN_IMAGE);
 	}
 
 	/**
@@ -90,30 +158,67 @@ public class CheckersGame {
 	 */
 	public void run() {
 		initialize();
-		welcomeThenConstructPieces();
+		if (!recoverJournal()) {
+			welcomeThenConstructPieces();
+			startJournal();
+		}
 		drawConfiguration();
 		StdDraw.show();
+		if (gameOver()) {
+			showResult();
+			return;
+		}
 
 		while (true) {
+			//let the computer take its turn without waiting for a click
+			if (isComputerTurn()) {
+				if (computerMove()) {
+					drawChanges();
+					StdDraw.show();
+					if (gameOver()) {
+						showResult();
+						break;
+					}
+					continue;
+				}
+			}
+			//sleep until the user clicks or types a key
+			StdDraw.waitForInput();
+			if(StdDraw.hasNextKeyTyped()){
+				key = StdDraw.nextKeyTyped(); 
+				if(key == 'S' ||key == 's'){
+					saveGame();
+					endJournal();
+					System.exit(0);
+				}else if(key == 'P' || key == 'p'){
+					exportGame();
+				}
+			}
 			//check for click (mouse down and up without any movement between)
 			if(StdDraw.hasNextMouseClicked()) {
 				processInput(); // select/deselect/move
-				StdDraw.clear();
-				drawConfiguration(); // only need to redraw after click
+				drawChanges(); // only need to redraw after click
 				StdDraw.show();
-				if(StdDraw.hasNextKeyTyped()){
-					key = StdDraw.nextKeyTyped(); 
-					if(key == 'S' ||key == 's'){
-						saveGame();
-						System.exit(0);
-					}
+				if (gameOver()) {
+					showResult();
+					break;
 				}
-				if (gameOver()) break;
 			}
-			StdDraw.pause(PAUSE_TIME);
 		}
 	}
 
+	// announce the outcome and wait for a click before closing
+	private void showResult() {
+		endJournal(); // nothing left to recover
+		System.out.println(gameResult());
+		StdDraw.setPenColor(StdDraw.WHITE);
+		StdDraw.filledRectangle(4, 4, 2, 0.5);
+		StdDraw.setPenColor(StdDraw.BLACK);
+		StdDraw.text(4, 4, gameResult());
+		StdDraw.show();
+		StdDraw.waitForMouseClicked();
+	}
+
 	private void welcomeThenConstructPieces() {
 		// draw gray game button on the top half of the screen
 		StdDraw.setPenColor(StdDraw.LIGHT_GRAY);
@@ -131,12 +236,10 @@ public class CheckersGame {
 		StdDraw.show();
 		
 		//wait for click
-		while(!StdDraw.hasNextMouseClicked()){
-			StdDraw.pause(PAUSE_TIME);
-		}
+		StdDraw.MouseClick click = StdDraw.waitForMouseClicked();
 		
 		//respond to click
-		if(StdDraw.nextMouseClicked().getY() > 4){
+		if(click.getY() > 4){
 			//if user clicks in top half of canvas
 			//set up pieces in starting configuration
 			setupPieces();
@@ -152,47 +255,136 @@ public class CheckersGame {
 	//loads the instance of a saved game if the button load saved is clicked
 	private void loadSavedGame() {
 		try {
-			Scanner input = new Scanner(new File("game.txt"));
-			String curPlayer = input.nextLine();
-			if(curPlayer == "true"){
-				currentPlayer = true;
-			}else{
-				currentPlayer = false;
-			}
-			
-			while(input.hasNextLine()){
-				String gamePiece = input.nextLine();
-				//how to set the values once we read in the string
-				//must initialize values
-				
-			}
-			
-			input.close();
-			} catch (FileNotFoundException e) {
-				System.out.println(e);
-				System.exit(1);
-			}
+			restore(Snapshot.load(new File(SAVE_FILE)));
+		} catch (IOException e) {
+			System.out.println(e);
+			System.exit(1);
+		}
 	}
 
 	private void saveGame() {
 		try {
-			PrintWriter output = new PrintWriter("game.txt");
-				/* write to the file */
-				if(currentPlayer){
-					output.println(currentPlayer);
-				}else{
-					output.println(currentPlayer);
-				}
-				
-				//in a while or for loop call upon all the instances of current Piece
-				output.println(currentPiece.toString());
-				
-			
-			output.close();
-			} catch (FileNotFoundException e) {
-				System.out.println(e);
-				System.exit(1);
+			snapshot().save(new File(SAVE_FILE));
+		} catch (IOException e) {
+			System.out.println(e);
+			System.exit(1);
+		}
+	}
+
+	// journal the moves of a new or loaded game from its current state
+	private void startJournal() {
+		try {
+			journal = MoveJournal.create(new File(JOURNAL_FILE), snapshot(), MoveJournal.DEFAULT_SYNC_MILLIS);
+		} catch (IOException e) {
+			System.out.println("not journaling moves: " + e);
+		}
+	}
+
+	private void endJournal() {
+		if (journal == null) return;
+		try {
+			journal.delete();
+		} catch (IOException e) {
+			System.out.println(e);
+		}
+		journal = null;
+	}
+
+	/**
+	 * Continue a game that ended without being finished or saved by 
+	 * replaying its journal, if there is one. 
+	 * @return true if a game was recovered
+	 */
+	private boolean recoverJournal() {
+		File file = new File(JOURNAL_FILE);
+		if (!file.exists()) return false;
+		MoveJournal.Replay replay;
+		try {
+			replay = MoveJournal.read(file);
+		} catch (IOException e) {
+			System.out.println("ignoring " + JOURNAL_FILE + ": " + e);
+			return false;
+		}
+		restore(replay.base);
+		int played = 0;
+		// stop at a damaged record rather than play an illegal move
+		while (played < replay.size() && playMove(replay.move(played), replay.captured(played))) {
+			played++;
+		}
+		System.out.println("recovered " + played + " moves from " + JOURNAL_FILE);
+		try {
+			if (played == replay.size()) {
+				journal = MoveJournal.reopen(file, MoveJournal.DEFAULT_SYNC_MILLIS);
+			} else {
+				startJournal();
 			}
+		} catch (IOException e) {
+			System.out.println("not journaling moves: " + e);
+		}
+		return true;
+	}
+
+	private void exportGame() {
+		try (Writer out = new BufferedWriter(new FileWriter(PDN_FILE))) {
+			exportPdn(out);
+			System.out.println("wrote " + PDN_FILE);
+		} catch (IOException e) {
+			System.out.println(e);
+		}
+	}
+
+	/**
+	 * Write the moves played so far as a PDN game, with its result 
+	 * if it is over.
+	 */
+	public void exportPdn(Appendable out) throws IOException {
+		Map<String, String> tags = new LinkedHashMap<String, String>();
+		tags.put("Event", "Checkers");
+		tags.put("Date", new java.text.SimpleDateFormat("yyyy.MM.dd").format(new Date()));
+		tags.put("Black", computerPlayer == Boolean.TRUE ? "Computer" : "Human");
+		tags.put("White", computerPlayer == Boolean.FALSE ? "Computer" : "Human");
+		game.writePdn(out, tags);
+	}
+
+	/** The complete state of the game, for saving */
+	public Snapshot snapshot() {
+		boolean jumping = currentPiece != null && currentPiece.capturing();
+		Position start = new Position();
+		start.copyFrom(game.position());
+		return new Snapshot(start, jumping, jumping ? turnFrom : 0,
+				jumping ? Position.square(currentPiece.getRow(), currentPiece.getCol()) : 0,
+				jumping ? turnCaptured : 0, game.quietPlies());
+	}
+
+	/**
+	 * Replace the whole game with a saved state: pieces, player to move, 
+	 * a multi-jump in progress and the draw count.
+	 */
+	public void restore(Snapshot snapshot) {
+		Position start = snapshot.position;
+		for (int row=0; row<8; row++) {
+			for (int col=0; col<8; col++) {
+				board[row][col] = null;
+			}
+		}
+		currentPiece = null;
+		// pieces captured during an unfinished multi-jump are already gone
+		int occupied = (start.dark() | start.light()) & ~(snapshot.jumping ? snapshot.captured : 0);
+		while (occupied != 0) {
+			int sq = Integer.numberOfTrailingZeros(occupied);
+			occupied &= occupied - 1;
+			boolean jumper = snapshot.jumping && sq == snapshot.jumpFrom;
+			int at = jumper ? snapshot.jumpAt : sq;
+			int row = Position.row(at), col = Position.col(at);
+			board[row][col] = new Piece((start.dark() & (1 << sq)) != 0, board, row, col,
+					jumper, jumper, (start.kings() & (1 << sq)) != 0);
+			if (jumper) currentPiece = board[row][col];
+		}
+		currentPlayer = start.darkToMove();
+		// the game holds the position from before the multi-jump, like during play
+		game.reset(start, snapshot.quietPlies);
+		turnFrom = snapshot.jumping ? snapshot.jumpFrom : -1;
+		turnCaptured = snapshot.jumping ? snapshot.captured : 0;
 	}
 
 	/**
@@ -213,13 +405,139 @@ public class CheckersGame {
 				board[row][col] = new Piece(false,board,row,col);
 			}
 		}
+		resetStatus();
 	}
 
-	/** Reports whether the current player has any moves */
-	public boolean gameOver() {
+	/** Let the computer player look up endgame positions in the given databases */
+	public void useTablebase(Tablebase tablebase) {
+		if (search != null) search.setTablebase(tablebase);
+	}
+
+	/** Let the computer player score positions with the given weights */
+	public void useEvaluator(Evaluator evaluator) {
+		if (search != null) search.setEvaluator(evaluator);
+	}
+
+	/** Let the computer player take its opening moves from the given book */
+	public void useOpeningBook(OpeningBook book) {
+		this.book = book;
+	}
+
+	/** True when it is the computer's turn to move */
+	private boolean isComputerTurn() {
+		return computerPlayer != null && computerPlayer == currentPlayer;
+	}
+
+	/**
+	 * Play a book move if the position is in the opening book, 
+	 * otherwise search the current position and play the chosen move.
+	 * @return false if the computer has no legal move
+	 */
+	private boolean computerMove() {
+		Position position = game.position();
+		int[] bookMove = book == null ? null : book.pick(position, random);
+		if (bookMove != null) {
+			System.out.println("computer: " + Notation.toString(bookMove[0], bookMove[1]) + " from book");
+			playMove(bookMove[0], bookMove[1]);
+			return true;
+		}
+		Search.Result result = search.search(position, computerMillis);
+		if (!result.hasMove()) return false;
+		System.out.println("computer: " + result);
+		playMove(result.move, result.captured);
+		return true;
+	}
+
+	// put a complete move (the computer's, or a replayed one) on the board and pass the turn;
+	// false, changing nothing, if it is not legal
+	private boolean playMove(int move, int captured) {
+		if (!recordMove(move, captured)) return false;
+		game.position().toBoard(board);
+		currentPlayer = game.darkToMove();
+		currentPiece = null;
+		return true;
+	}
+
+	/**
+	 * Snapshot of the current board as a bitboard Position,
+	 * for the engine classes that work on masks instead of pieces.
+	 */
+	public Position getPosition() {
+		return Position.fromBoard(board, currentPlayer);
+	}
+
+	/**
+	 * Replace the pieces on the board with the given position
+	 * and clear any selection.
+	 */
+	public void setPosition(Position position) {
+		position.toBoard(board);
+		currentPlayer = position.darkToMove();
+		currentPiece = null;
+		resetStatus();
+	}
+
+	/**
+	 * Change the draw rule.
+	 * @param quietPlies plies without a capture or man move that draw the game (0 to disable)
+	 * @param repetitions occurrences of one position that draw the game (0 to disable)
+	 */
+	public void setDrawRule(int quietPlies, int repetitions) {
+		game.setDrawRule(quietPlies, repetitions);
+	}
+
+	// start the game over from the current board
+	private void resetStatus() {
+		game.reset(getPosition(), 0);
+		turnFrom = -1;
+		turnCaptured = 0;
+	}
+
+	// pass a completed move to the game, which checks it against the rules, and journal it;
+	// false, changing nothing, if it is not legal
+	private boolean recordMove(int move, int captured) {
+		if (!game.play(move, captured)) return false;
+		if (journal != null) {
+			try {
+				journal.append(move, captured);
+			} catch (IOException e) {
+				System.out.println("not journaling moves: " + e);
+				journal = null;
+			}
+		}
+		return true;
+	}
+
+	// whether some legal move starts on a square; the pieces know how pieces move,
+	// but not that a capture must be taken when there is one
+	private boolean canMoveFrom(int square) {
+		int n = game.moves(legal);
+		for (int i=0; i<n; i++) {
+			if (Move.from(legal[i * Move.WIDTH]) == square) return true;
+		}
 		return false;
 	}
 
+	// whether the player to move has to capture
+	private boolean mustCapture() {
+		return game.moves(legal) > 0 && legal[1] != 0;
+	}
+
+	/** Reports whether the game has ended: no moves left for the current player, or a draw */
+	public boolean gameOver() {
+		return game.isOver();
+	}
+
+	/** Describes the outcome once gameOver() is true */
+	public String gameResult() {
+		return game.resultText();
+	}
+
+	/** The headless game behind the board */
+	public Game getGame() {
+		return game;
+	}
+
 	/**
 	 * Process mouse and key presses - user input.
 	 * Note how to use mouse here in different ways. Click actions are defined by
@@ -240,59 +558,162 @@ public class CheckersGame {
 		//code that selects the piece
 		if(row < 0 || col < 0 || row > 7 || col > 7){
 			return;
+		}else if (isComputerTurn()) {
+			// ignore clicks while the computer is to move
+			return;
 		}else if (currentPiece == null) {
 			// select new piece if it belongs to the correct player
 			Piece newPiece = board[row][col]; 
-			if (newPiece != null && newPiece.player == currentPlayer && newPiece.hasValidMove()) {
+			if (newPiece != null && newPiece.player == currentPlayer && newPiece.hasValidMove()
+					&& canMoveFrom(Position.square(row, col))) {
 				newPiece.select();
 				currentPiece = newPiece;
 			}
 		}else if(curPiece == currentPiece){
+			// a piece in the middle of a multi-jump cannot be put down
+			if(!curPiece.capturing()){
 				curPiece.deselect();
 				currentPiece = null;
+			}
 		}else if(currentPiece.isValidMove(row,col)){ 
 			// move the current piece to the clicked location
+			int fromRow = currentPiece.getRow(), fromCol = currentPiece.getCol();
+			// a step is refused while a capture is available
+			if(Math.abs(row - fromRow) != 2 && mustCapture()){
+				return;
+			}
 			currentPiece.move(row,col);
-			//should write a better check because we keep alternating without actually moving *******
+			// the move was refused, keep the same player and selection
+			if(currentPiece.getRow() == fromRow && currentPiece.getCol() == fromCol){
+				return;
+			}
+			if(turnFrom < 0){
+				turnFrom = Position.square(fromRow, fromCol);
+			}
+			if(Math.abs(row - fromRow) == 2){
+				turnCaptured |= 1 << Position.square((row + fromRow)/2, (col + fromCol)/2);
+			}
 			if(currentPiece.capturing() == false){
 			// deselect and get ready for next player's turn
+				boolean recorded = recordMove(Move.encode(turnFrom, Position.square(row, col)), turnCaptured);
+				turnFrom = -1;
+				turnCaptured = 0;
 				currentPiece.deselect();
 				currentPiece = null;
-				currentPlayer = !currentPlayer;
+				if(recorded){
+					currentPlayer = !currentPlayer;
+				}else{
+					// the rules refused it after all: put the board back as the game has it
+					game.position().toBoard(board);
+				}
 			}
 		}
 	}
 
 	/**
-	 * Draw the configuration of the pieces.
+	 * Draw the configuration of the pieces, over the whole canvas.
 	 */
 	public void drawConfiguration() {
-		// draw the tiles of the board
-		StdDraw.setPenColor(StdDraw.BLACK);
-		for (int x=0; x<8; x++) {
-			for (int y=0; y<8; y++) {
-				if ((x+y)%2==0)
-					StdDraw.filledRectangle(x+0.5,y+0.5,0.5,0.5);
+		// draw the tiles of the board, the first time into a layer
+		if (boardLayer == null) {
+			StdDraw.clear();
+			StdDraw.setPenColor(StdDraw.BLACK);
+			for (int x=0; x<8; x++) {
+				for (int y=0; y<8; y++) {
+					if ((x+y)%2==0)
+						StdDraw.filledRectangle(x+0.5,y+0.5,0.5,0.5);
+				}
 			}
-		}
-
-		// draw yellow banner indicating current player
-		StdDraw.setPenColor(StdDraw.YELLOW);
-		if (currentPlayer) {
-			StdDraw.filledRectangle(4, -BANNER/2, 4+BANNER, BANNER/2);
+			boardLayer = StdDraw.copyLayer();
 		} else {
-			StdDraw.filledRectangle(4, 8+BANNER/2, 4+BANNER, BANNER/2);			
+			StdDraw.drawLayer(boardLayer);
 		}
 
+		drawBanner();
+
 		// tell pieces to draw themselves
 		for (int y=0; y<8; y++) {
 			for (int x=0; x<8; x++) {
 				Piece piece = board[y][x];
 				if (piece!=null) {
-					piece.draw();
+					drawPiece(piece);
 				}
+				drawn[y*8+x] = look(piece);
 			}
 		}
 	}
-	
+
+	/**
+	 * Draw only what changed since the last frame: the squares a piece
+	 * left, arrived on or was captured from, highlights that came or went,
+	 * and the banner if the turn passed. The canvas must still hold the
+	 * last frame drawn by this game.
+	 */
+	public void drawChanges() {
+		if (drawnPlayer == null) {
+			drawConfiguration();
+			return;
+		}
+		boolean banner = drawnPlayer != currentPlayer;
+		if (banner) {
+			// put back the board under the old banner
+			StdDraw.drawLayer(boardLayer, 4, drawnPlayer ? -BANNER/2 : 8+BANNER/2, 4+BANNER, BANNER/2);
+		}
+		int bannerRow = currentPlayer ? 0 : 7;
+		for (int y=0; y<8; y++) {
+			for (int x=0; x<8; x++) {
+				Piece piece = board[y][x];
+				int look = look(piece);
+				if (look != drawn[y*8+x]) {
+					StdDraw.drawLayer(boardLayer, x+0.5, y+0.5, 0.5, 0.5);
+					if (piece!=null) {
+						drawPiece(piece);
+					}
+					drawn[y*8+x] = look;
+					// the square's pixels overlap the edge of the banner
+					banner |= y == bannerRow;
+				}
+			}
+		}
+		if (banner) drawBanner();
+	}
+
+	// draw yellow banner indicating current player
+	private void drawBanner() {
+		StdDraw.setPenColor(StdDraw.YELLOW);
+		if (currentPlayer) {
+			StdDraw.filledRectangle(4, -BANNER/2, 4+BANNER, BANNER/2);
+		} else {
+			StdDraw.filledRectangle(4, 8+BANNER/2, 4+BANNER, BANNER/2);			
+		}
+		drawnPlayer = currentPlayer;
+	}
+
+	// everything drawPiece shows of a piece, as a number: 0 for an empty square
+	private static int look(Piece piece) {
+		if (piece == null) return 0;
+		return 1 | (piece.player ? 2 : 0) | (piece.isKing() ? 4 : 0)
+				| (piece.isSelected() ? 8 : 0) | (piece.capturing() ? 16 : 0);
+	}
+
+	/**
+	 * Draw correctly-colored circle at correct coordinates.
+	 * Circle should be outlined in yellow if selected 
+	 * or magenta if jumping.
+	 */
+	private void drawPiece(Piece piece) {
+		double y = piece.getRow()+.5, x = piece.getCol()+.5; // add .5 to center
+		if (piece.isSelected()) { // draw slightly larger yellow circle underneath
+			StdDraw.setPenColor(StdDraw.YELLOW);
+			if (piece.capturing()) StdDraw.setPenColor(StdDraw.MAGENTA);
+			StdDraw.filledCircle(x,y,.45);
+		}
+		// draw a circle at the correct place with correct color
+		StdDraw.setPenColor(piece.player?StdDraw.RED:StdDraw.LIGHT_GRAY);
+		StdDraw.filledCircle(x,y,.4);
+
+		// draw image over kings
+		if (piece.isKing())
+			StdDraw.picture(x,y,CROWN_IMAGE,.5,.5);
+	}
 }
\ No newline at end of file
@@ -0,0 +1,76 @@
+/**
+ * Lookup tables for the diagonals of the 32 playable squares (numbered
+ * as in Position), so the rule checks in Piece never compute row and
+ * column offsets or test them against the edges of the board.
+ *
+ * There are four directions, up being towards row 7 and left towards
+ * col 0. For each square and direction the tables give the neighboring
+ * square and the square a jump that way lands on, or NONE off the
+ * board; and for each pair of squares, the direction of the step or
+ * jump between them, if there is one. Which directions a piece may
+ * use is a mask of direction bits.
+ */
+final class Diagonals {
+
+	static final int UP_LEFT = 0, UP_RIGHT = 1, DOWN_LEFT = 2, DOWN_RIGHT = 3;
+	/** No such square, or no such direction */
+	static final int NONE = -1;
+
+	/** Directions a dark man, a light man and a king move in, one bit each */
+	static final int DARK_MAN = 1 << UP_LEFT | 1 << UP_RIGHT;
+	static final int LIGHT_MAN = 1 << DOWN_LEFT | 1 << DOWN_RIGHT;
+	static final int KING = DARK_MAN | LIGHT_MAN;
+
+	// by square*4 + direction
+	private static final byte[] STEP = new byte[Position.SQUARES * 4];
+	private static final byte[] JUMP = new byte[Position.SQUARES * 4];
+	// by from*32 + to
+	private static final byte[] STEP_DIRECTION = new byte[Position.SQUARES * Position.SQUARES];
+	private static final byte[] JUMP_DIRECTION = new byte[Position.SQUARES * Position.SQUARES];
+
+	static {
+		java.util.Arrays.fill(STEP_DIRECTION, (byte) NONE);
+		java.util.Arrays.fill(JUMP_DIRECTION, (byte) NONE);
+		for (int sq=0; sq<Position.SQUARES; sq++) {
+			int row = Position.row(sq), col = Position.col(sq);
+			for (int d=0; d<4; d++) {
+				int rowDelta = d < 2 ? 1 : -1;
+				int colDelta = (d & 1) == 0 ? -1 : 1;
+				int step = Position.square(row + rowDelta, col + colDelta);
+				int jump = Position.square(row + 2*rowDelta, col + 2*colDelta);
+				STEP[sq*4 + d] = (byte) step;
+				JUMP[sq*4 + d] = (byte) jump;
+				if (step != NONE) STEP_DIRECTION[sq*Position.SQUARES + step] = (byte) d;
+				if (jump != NONE) JUMP_DIRECTION[sq*Position.SQUARES + jump] = (byte) d;
+			}
+		}
+	}
+
+	// not instantiable
+	private Diagonals() { }
+
+	/** Directions a piece may move in */
+	static int directions(boolean player, boolean king) {
+		return king ? KING : player ? DARK_MAN : LIGHT_MAN;
+	}
+
+	/** The square next to square in a direction, or NONE */
+	static int step(int square, int direction) {
+		return STEP[square*4 + direction];
+	}
+
+	/** The square two away from square in a direction, or NONE */
+	static int jump(int square, int direction) {
+		return JUMP[square*4 + direction];
+	}
+
+	/** Direction of a one-square step from one square to another, or NONE */
+	static int stepDirection(int from, int to) {
+		return STEP_DIRECTION[from*Position.SQUARES + to];
+	}
+
+	/** Direction of a jump from one square to another, or NONE */
+	static int jumpDirection(int from, int to) {
+		return JUMP_DIRECTION[from*Position.SQUARES + to];
+	}
+}
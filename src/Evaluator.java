@@ -0,0 +1,185 @@
+import java.io.*;
+
+/**
+ * Scores positions for the search, in hundredths of a man, from the
+ * point of view of the side to move. The score is a weighted sum of
+ * features, each counted for dark minus the same for light:
+ *
+ *     man        each man
+ *     king       each king
+ *     tempo      each row a man has advanced
+ *     backRank   each man still on its own back row, where it keeps
+ *                the other side's men from crowning
+ *     center     each piece on the eight central squares
+ *     mobility   each step the pieces could make
+ *
+ * All but mobility depend only on which piece stands on which square,
+ * so together they come down to one table of values per piece kind and
+ * square, and their sum, the placement score, changes by a few table
+ * lookups when a move is made. The search keeps it up to date with
+ * delta() as it makes moves, and simply drops it again with each move
+ * it takes back; a leaf then only adds mobility, found for all pieces
+ * at once by shifting masks.
+ *
+ * Weights are read from a text file with one "name value" pair per
+ * line, e.g. "backRank 6"; # starts a comment, and weights left out
+ * keep their defaults. An Evaluator never changes once built, so
+ * every search thread can share one.
+ *
+ * Usage:
+ *     java Evaluator    print the default weights, as a weights file
+ */
+public final class Evaluator {
+
+	/** Feature indices, in weights file order */
+	public static final int MAN = 0, KING = 1, TEMPO = 2, BACK_RANK = 3, CENTER = 4, MOBILITY = 5;
+	private static final String[] NAMES = { "man", "king", "tempo", "backRank", "center", "mobility" };
+	private static final int[] DEFAULTS = { 100, 130, 2, 6, 4, 2 };
+
+	/** The default weights */
+	public static final Evaluator DEFAULT = new Evaluator(DEFAULTS);
+
+	/** Back rows of the dark and light men, and the central squares */
+	private static final int DARK_BACK_RANK = Position.LIGHT_KING_ROW;
+	private static final int LIGHT_BACK_RANK = Position.DARK_KING_ROW;
+	private static final int CENTER_SQUARES = 1 << Position.square(2, 2) | 1 << Position.square(2, 4)
+			| 1 << Position.square(3, 3) | 1 << Position.square(3, 5) | 1 << Position.square(4, 2)
+			| 1 << Position.square(4, 4) | 1 << Position.square(5, 3) | 1 << Position.square(5, 5);
+
+	private final int[] weights;
+	// placement value by Zobrist piece kind and square, negative for light pieces
+	private final int[][] squares = new int[4][Position.SQUARES];
+
+	/**
+	 * Construct an evaluator with the given weights.
+	 * @param weights one per feature, indexed MAN to MOBILITY
+	 */
+	public Evaluator(int[] weights) {
+		if (weights.length != NAMES.length)
+			throw new IllegalArgumentException("expected " + NAMES.length + " weights, got " + weights.length);
+		this.weights = weights.clone();
+		for (int sq=0; sq<Position.SQUARES; sq++) {
+			int bit = 1 << sq, row = Position.row(sq);
+			int center = (CENTER_SQUARES & bit) != 0 ? weights[CENTER] : 0;
+			// dark men advance up the board, light men down
+			squares[Zobrist.DARK_MAN][sq] = weights[MAN] + weights[TEMPO] * row + center
+					+ ((DARK_BACK_RANK & bit) != 0 ? weights[BACK_RANK] : 0);
+			squares[Zobrist.LIGHT_MAN][sq] = -(weights[MAN] + weights[TEMPO] * (7 - row) + center
+					+ ((LIGHT_BACK_RANK & bit) != 0 ? weights[BACK_RANK] : 0));
+			squares[Zobrist.DARK_KING][sq] = weights[KING] + center;
+			squares[Zobrist.LIGHT_KING][sq] = -(weights[KING] + center);
+		}
+	}
+
+	/**
+	 * Read weights from a file.
+	 * @throws IOException if the file is missing or a line is not a known weight
+	 */
+	public static Evaluator open(File file) throws IOException {
+		int[] weights = DEFAULTS.clone();
+		try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+			String line;
+			for (int number=1; (line = in.readLine()) != null; number++) {
+				int comment = line.indexOf('#');
+				if (comment >= 0) line = line.substring(0, comment);
+				line = line.trim();
+				if (line.isEmpty()) continue;
+				String[] words = line.split("\\s+");
+				int feature = feature(words[0]);
+				if (words.length != 2 || feature < 0) throw new IOException(file + ":" + number + ": not a weight: " + line);
+				try {
+					weights[feature] = Integer.parseInt(words[1]);
+				} catch (NumberFormatException e) {
+					throw new IOException(file + ":" + number + ": bad value: " + line);
+				}
+			}
+		}
+		return new Evaluator(weights);
+	}
+
+	// index of the feature with a name, or -1
+	private static int feature(String name) {
+		for (int i=0; i<NAMES.length; i++) {
+			if (NAMES[i].equals(name)) return i;
+		}
+		return -1;
+	}
+
+	/** Weight of a feature, MAN to MOBILITY */
+	public int weight(int feature) {
+		return weights[feature];
+	}
+
+	/** Placement score of p, dark's point of view, computed from scratch */
+	public int placement(Position p) {
+		return sum(squares[Zobrist.DARK_MAN], p.dark & ~p.kings) + sum(squares[Zobrist.DARK_KING], p.dark & p.kings)
+				+ sum(squares[Zobrist.LIGHT_MAN], p.light & ~p.kings) + sum(squares[Zobrist.LIGHT_KING], p.light & p.kings);
+	}
+
+	/**
+	 * Change in the placement score of p when a move is made in it,
+	 * to be called before the move is made.
+	 */
+	public int delta(Position p, int move, int captured) {
+		int from = Move.from(move), to = Move.to(move);
+		boolean dark = p.darkToMove;
+		boolean wasKing = (p.kings & 1 << from) != 0;
+		// crowned as Position.apply() crowns it
+		boolean king = wasKing || (move & Move.CROWNED) != 0
+				|| (1 << to & (dark ? Position.DARK_KING_ROW : Position.LIGHT_KING_ROW)) != 0;
+		int delta = squares[Zobrist.kind(dark, king)][to] - squares[Zobrist.kind(dark, wasKing)][from];
+		if (captured != 0) {
+			delta -= sum(squares[Zobrist.kind(!dark, false)], captured & ~p.kings)
+					+ sum(squares[Zobrist.kind(!dark, true)], captured & p.kings);
+		}
+		return delta;
+	}
+
+	/**
+	 * Score of p for the side to move.
+	 * @param placement placement score of p, as kept up to date with delta()
+	 */
+	public int evaluate(Position p, int placement) {
+		int score = placement;
+		if (weights[MOBILITY] != 0) score += weights[MOBILITY] * (mobility(p, true) - mobility(p, false));
+		return p.darkToMove ? score : -score;
+	}
+
+	/** Score of p for the side to move, computed from scratch */
+	public int evaluate(Position p) {
+		return evaluate(p, placement(p));
+	}
+
+	// number of one-square steps open to the pieces of one side
+	private static int mobility(Position p, boolean dark) {
+		int own = dark ? p.dark : p.light;
+		int empty = ~(p.dark | p.light);
+		int up = dark ? own : own & p.kings;
+		int down = dark ? own & p.kings : own;
+		return Integer.bitCount(MoveGenerator.upLeft(up) & empty) + Integer.bitCount(MoveGenerator.upRight(up) & empty)
+				+ Integer.bitCount(MoveGenerator.downLeft(down) & empty) + Integer.bitCount(MoveGenerator.downRight(down) & empty);
+	}
+
+	// sum of the values of the squares in a mask
+	private static int sum(int[] values, int mask) {
+		int sum = 0;
+		while (mask != 0) {
+			sum += values[Integer.numberOfTrailingZeros(mask)];
+			mask &= mask - 1;
+		}
+		return sum;
+	}
+
+	/** The weights, in weights file format */
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (int i=0; i<NAMES.length; i++) {
+			sb.append(NAMES[i]).append(' ').append(weights[i]).append('\n');
+		}
+		return sb.toString();
+	}
+
+	public static void main(String[] args) {
+		System.out.print(DEFAULT);
+	}
+}
@@ -0,0 +1,206 @@
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * A game of checkers, or of another Variant, without any display: the
+ * position, the legal moves, the moves played so far and the end of
+ * the game, including the draw rules. It never touches StdDraw or AWT, so servers and tools
+ * can run any number of games without a window; CheckersGame is the
+ * graphical client of one.
+ *
+ * Moves are complete turns in the Move encoding, as listed by moves():
+ * a multi-jump is one move. play() checks a move against the rules
+ * before making it; apply() trusts the caller, and is only for moves
+ * taken from the list of legal moves just generated, as GameServer
+ * does after looking a move up with Notation.find(). The pieces of the
+ * GUI do not enforce forced captures, so CheckersGame uses play().
+ *
+ * The game ends when the player to move has no legal move, or in a
+ * draw after a number of plies without a capture or a man moving, or
+ * when the same position comes up for the third time. The repetition
+ * count only keeps positions since the last capture or man move, since
+ * earlier ones can never come back.
+ */
+public class Game {
+
+	/** Default draw rule: 40 moves each without a capture or man move, or threefold repetition */
+	public static final int DRAW_QUIET_PLIES = 80;
+	public static final int DRAW_REPETITIONS = 3;
+
+	private final Variant variant;
+	private final Position position = new Position();
+	private final Position start = new Position(); // where the moves in history begin
+	private int quietPlies; // plies since the last capture or man move
+	private final Map<Long, Integer> repetitions = new HashMap<Long, Integer>(); // positions since then
+	private int drawQuietPlies = DRAW_QUIET_PLIES;
+	private int drawRepetitions = DRAW_REPETITIONS;
+	private int[] history = new int[64 * Move.WIDTH]; // Move.WIDTH ints per move
+	private int historySize;
+	private final int[] buffer = new int[Variant.BUFFER_SIZE];
+
+	/** A game of checkers from the starting position */
+	public Game() {
+		this(Position.start());
+	}
+
+	/** A game of checkers from the given position */
+	public Game(Position start) {
+		this(Variant.CHECKERS, start);
+	}
+
+	/** A game of a variant from the starting position */
+	public Game(Variant variant) {
+		this(variant, Position.start());
+	}
+
+	/** A game of a variant from the given position */
+	public Game(Variant variant, Position start) {
+		this.variant = variant;
+		reset(start, 0);
+	}
+
+	/**
+	 * Start over from a position.
+	 * @param quietPlies plies without a capture or man move already played before it
+	 */
+	public void reset(Position start, int quietPlies) {
+		position.copyFrom(start);
+		this.start.copyFrom(start);
+		this.quietPlies = quietPlies;
+		repetitions.clear();
+		repetitions.put(position.hash(), 1);
+		historySize = 0;
+	}
+
+	/**
+	 * Change the draw rule.
+	 * @param quietPlies plies without a capture or man move that draw the game (0 to disable)
+	 * @param repetitions occurrences of one position that draw the game (0 to disable)
+	 */
+	public void setDrawRule(int quietPlies, int repetitions) {
+		drawQuietPlies = quietPlies;
+		drawRepetitions = repetitions;
+	}
+
+	/** The rules the game is played by */
+	public Variant variant() {
+		return variant;
+	}
+
+	/** The current position; read it, but change it only through the game */
+	public Position position() {
+		return position;
+	}
+
+	/** The position the game started from */
+	public Position startPosition() {
+		return start;
+	}
+
+	public boolean darkToMove() {
+		return position.darkToMove();
+	}
+
+	/** Plies since the last capture or man move */
+	public int quietPlies() {
+		return quietPlies;
+	}
+
+	/**
+	 * List the legal moves.
+	 * @param moves buffer of Variant.BUFFER_SIZE ints, Move.WIDTH per move
+	 * @return number of moves
+	 */
+	public int moves(int[] moves) {
+		return variant.generate(position, moves);
+	}
+
+	/** Make a move if it is legal; returns false, changing nothing, if not */
+	public boolean play(int move, int captured) {
+		int n = variant.generate(position, buffer);
+		for (int i=0; i<n; i++) {
+			if (buffer[i * Move.WIDTH] == move && buffer[i * Move.WIDTH + 1] == captured) {
+				apply(move, captured);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Make a move between two squares if it is legal.
+	 * @param captured squares it captures, or 0 for the first legal move between them
+	 */
+	public boolean play(int from, int to, int captured) {
+		int m = Notation.find(variant, position, from, to, captured, buffer);
+		if (m < 0) return false;
+		apply(buffer[m], buffer[m + 1]);
+		return true;
+	}
+
+	/** Make a move without checking it against the rules; it must be one of the legal moves */
+	public void apply(int move, int captured) {
+		boolean manMoved = (position.kings() & (1 << Move.from(move))) == 0;
+		position.apply(move, captured);
+		if (captured != 0 || manMoved) {
+			// earlier positions can never come back
+			quietPlies = 0;
+			repetitions.clear();
+		} else {
+			quietPlies++;
+		}
+		repetitions.merge(position.hash(), 1, Integer::sum);
+		if (historySize * Move.WIDTH == history.length) history = Arrays.copyOf(history, 2 * history.length);
+		history[historySize * Move.WIDTH] = move;
+		history[historySize * Move.WIDTH + 1] = captured;
+		historySize++;
+	}
+
+	/** Number of moves played since the start position */
+	public int plies() {
+		return historySize;
+	}
+
+	/** Move i of the game, in the Move encoding */
+	public int move(int i) {
+		return history[i * Move.WIDTH];
+	}
+
+	/** Squares captured by move i */
+	public int captured(int i) {
+		return history[i * Move.WIDTH + 1];
+	}
+
+	/** True once the player to move has no moves left, or the game is drawn */
+	public boolean isOver() {
+		return !variant.hasMoves(position) || isDraw();
+	}
+
+	/** Draw by the quiet-move rule or by repetition */
+	public boolean isDraw() {
+		return (drawQuietPlies > 0 && quietPlies >= drawQuietPlies)
+				|| (drawRepetitions > 0 && repetitions.get(position.hash()) >= drawRepetitions);
+	}
+
+	/** Outcome as a PdnGame result; PdnGame.UNKNOWN while the game goes on */
+	public int result() {
+		if (isDraw()) return PdnGame.DRAW;
+		if (variant.hasMoves(position)) return PdnGame.UNKNOWN;
+		return position.darkToMove() ? PdnGame.LIGHT_WINS : PdnGame.DARK_WINS;
+	}
+
+	/** Describes the outcome once isOver() is true */
+	public String resultText() {
+		switch (result()) {
+		case PdnGame.DRAW: return "Draw";
+		case PdnGame.DARK_WINS: return "Dark wins";
+		case PdnGame.LIGHT_WINS: return "Light wins";
+		default: return "In progress";
+		}
+	}
+
+	/** Write the game so far in PDN, with its result if it is over */
+	public void writePdn(Appendable out, Map<String, String> tags) throws IOException {
+		Pdn.write(out, tags, variant.pdnGameType(), start, history, historySize, result());
+	}
+}
@@ -0,0 +1,546 @@
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Hosts any number of independent games in one JVM for clients on a
+ * local socket. Each game is a headless Game with its own turn loop:
+ * a thread that takes the game's commands from a mailbox, one at a
+ * time, so a game never needs locking. On Java 21 and later these are
+ * virtual threads, so ten thousand waiting games cost little more than
+ * their Game objects; on older JVMs the server falls back to platform
+ * threads with small stacks.
+ *
+ * The protocol is one line per request and per reply. Several games
+ * can share a connection, and replies carry the game id because games
+ * answer independently of each other:
+ *
+ *     NEW [variant [fen]] OK id               (checkers, russian, brazilian or pool)
+ *     MOVES id            OK id 11-15 11-16 ...
+ *     PLAY id 11-15       OK id result        (result is *, 1-0, 0-1 or 1/2-1/2)
+ *     STATE id            OK id fen result
+ *     END id              OK id               (the game is discarded)
+ *     QUIT                BYE
+ *
+ * A new game starts from the usual position, or from a FEN (see Pdn).
+ * MOVES writes each move so that PLAY reads it back as that same move.
+ * A bad request gets "ERR id message" (or "ERR - message"). The games
+ * of a connection end when it closes.
+ *
+ * Usage:
+ *     java GameServer [port]                          serve on localhost
+ *     java GameServer -load games [connections] [port]  load test
+ *     java GameServer -check [games]                  check MOVES against PLAY
+ *
+ * The check plays random games of every variant on a server, some from
+ * positions where two captures share their first and last squares, and
+ * at each turn plays every move MOVES lists, each in a game of its own
+ * started from the same position, comparing the position it leads to.
+ * It then sends END with more requests for the same game right behind
+ * it, many times over on several connections at once, and expects an
+ * answer to every one of them.
+ *
+ * The load test starts a server, opens all the games at once over the
+ * given number of connections, and plays random moves in every game
+ * until each one ends, reporting moves per second.
+ */
+public class GameServer implements Closeable {
+
+	/** Default port */
+	public static final int PORT = 7777;
+
+	private static final int PLATFORM_STACK_SIZE = 256 * 1024;
+
+	private final ServerSocket server;
+	private final ExecutorService threads = newThreadPerTaskExecutor();
+	private final Map<Long, Session> games = new ConcurrentHashMap<Long, Session>();
+	private final AtomicLong nextId = new AtomicLong(1);
+
+	/**
+	 * A thread per task: virtual threads where the JVM has them, looked
+	 * up reflectively so the server still builds and runs on Java 17.
+	 */
+	static ExecutorService newThreadPerTaskExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			AtomicInteger count = new AtomicInteger();
+			return Executors.newCachedThreadPool(r -> {
+				Thread t = new Thread(null, r, "game-" + count.incrementAndGet(), PLATFORM_STACK_SIZE);
+				t.setDaemon(true);
+				return t;
+			});
+		}
+	}
+
+	/** Start serving on a local port (0 for any free port) */
+	public GameServer(int port) throws IOException {
+		server = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+		threads.execute(this::accept);
+	}
+
+	/** The port the server listens on */
+	public int port() {
+		return server.getLocalPort();
+	}
+
+	/** Number of games in progress */
+	public int games() {
+		return games.size();
+	}
+
+	private void accept() {
+		while (!server.isClosed()) {
+			try {
+				Socket socket = server.accept();
+				socket.setTcpNoDelay(true);
+				Connection c = new Connection(socket);
+				threads.execute(c::serve);
+			} catch (IOException e) {
+				if (!server.isClosed()) System.out.println("accept failed: " + e);
+			}
+		}
+	}
+
+	public void close() throws IOException {
+		server.close();
+		threads.shutdownNow();
+	}
+
+	/**
+	 * One client socket: reads requests and hands them to the games.
+	 * Replies from the games are queued and written by a thread of
+	 * their own, which flushes once the queue is empty, so a burst of
+	 * replies goes out in one write.
+	 */
+	private class Connection {
+		private final Socket socket;
+		private final Writer out;
+		// games still running on this connection; a game removes itself once it has ended
+		private final Map<Long, Session> sessions = new ConcurrentHashMap<Long, Session>();
+		private final BlockingQueue<String> replies = new LinkedBlockingQueue<String>();
+		private final String close = new String("close"); // queued last, by identity
+
+		Connection(Socket socket) throws IOException {
+			this.socket = socket;
+			out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), "US-ASCII"));
+		}
+
+		void reply(String line) {
+			replies.add(line);
+		}
+
+		private void write() {
+			try {
+				while (true) {
+					String line = replies.take();
+					do {
+						if (line == close) {
+							out.flush();
+							socket.close();
+							return;
+						}
+						out.write(line);
+						out.write('\n');
+					} while ((line = replies.poll()) != null);
+					out.flush();
+				}
+			} catch (IOException | InterruptedException e) {
+				// the client is gone, or the server is closing
+			}
+		}
+
+		void serve() {
+			threads.execute(this::write);
+			boolean quit = false;
+			// not closed here: closing the stream would close the socket before the replies are out
+			try {
+				BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+				String line;
+				while ((line = in.readLine()) != null) {
+					String[] words = line.trim().split("\\s+");
+					String command = words[0].toUpperCase();
+					if (command.equals("QUIT")) {
+						quit = true;
+						break;
+					} else if (command.equals("NEW")) {
+						Variant variant = Variant.CHECKERS;
+						Position start = Position.start();
+						if (words.length > 1) {
+							try {
+								variant = Variant.forName(words[1]);
+							} catch (IllegalArgumentException e) {
+								reply("ERR - no such variant " + words[1]);
+								continue;
+							}
+						}
+						if (words.length > 2) {
+							try {
+								start = Pdn.parseFen(words[2]);
+							} catch (IllegalArgumentException e) {
+								reply("ERR - " + e.getMessage());
+								continue;
+							}
+						}
+						Session s = new Session(nextId.getAndIncrement(), this, variant, start);
+						sessions.put(s.id, s);
+						games.put(s.id, s);
+						s.loop = threads.submit(s::run);
+						reply("OK " + s.id);
+					} else if (words.length < 2) {
+						reply("ERR - expected a game id: " + line);
+					} else {
+						Session s = null;
+						try {
+							s = games.get(Long.parseLong(words[1]));
+						} catch (NumberFormatException e) { }
+						if (s == null || s.connection != this || !s.offer(words)) reply("ERR " + words[1] + " no such game");
+					}
+				}
+			} catch (IOException e) {
+				// connection dropped
+			} finally {
+				// let the games answer what they were sent before they stop
+				for (Session s : sessions.values()) s.end();
+				for (Session s : sessions.values()) {
+					try {
+						s.loop.get();
+					} catch (InterruptedException | ExecutionException e) { }
+				}
+				if (quit) reply("BYE");
+				// the writer sends what is queued, then closes the socket
+				reply(close);
+			}
+		}
+	}
+
+	private static final String[] END = new String[0];
+
+	/** One game and its turn loop */
+	private class Session {
+		final long id;
+		final Connection connection;
+		final BlockingQueue<String[]> mailbox = new LinkedBlockingQueue<String[]>();
+		Future<?> loop; // the turn loop, running on its own thread
+		private boolean closed; // set once END is in the mailbox; guarded by this
+		private final Game game;
+		private final int[] moves = new int[Variant.BUFFER_SIZE];
+
+		Session(long id, Connection connection, Variant variant, Position start) {
+			this.id = id;
+			this.connection = connection;
+			game = new Game(variant, start);
+		}
+
+		/**
+		 * Queue a request, unless the game has ended: a request found
+		 * in games just before END closed it must not land behind the
+		 * END in the mailbox, where it would never be answered.
+		 * @return false if the game has ended
+		 */
+		synchronized boolean offer(String[] words) {
+			if (closed) return false;
+			mailbox.add(words);
+			return true;
+		}
+
+		synchronized void end() {
+			if (closed) return;
+			closed = true;
+			games.remove(id);
+			mailbox.add(END);
+		}
+
+		void run() {
+			try {
+				boolean ended = false;
+				for (String[] words; (words = mailbox.take()) != END; ) {
+					// requests that were queued behind an END find no game
+					if (ended) {
+						connection.reply("ERR " + id + " no such game");
+					} else {
+						connection.reply(handle(words));
+						ended = words[0].equalsIgnoreCase("END");
+					}
+				}
+			} catch (InterruptedException e) {
+				end();
+			} finally {
+				// let the finished game be collected, even while its connection stays open
+				connection.sessions.remove(id);
+			}
+		}
+
+		private String handle(String[] words) {
+			String command = words[0].toUpperCase();
+			if (command.equals("MOVES")) {
+				StringBuilder sb = new StringBuilder("OK ").append(id);
+				int n = game.moves(moves);
+				for (int i=0; i<n; i++) {
+					sb.append(' ').append(Notation.toString(game.position(), moves[i * Move.WIDTH], moves[i * Move.WIDTH + 1]));
+				}
+				return sb.toString();
+			} else if (command.equals("PLAY")) {
+				if (words.length < 3) return "ERR " + id + " expected a move";
+				if (game.isOver()) return "ERR " + id + " game over";
+				int m = Notation.find(game.variant(), game.position(), words[2], moves);
+				if (m < 0) return "ERR " + id + " illegal move " + words[2];
+				game.apply(moves[m], moves[m + 1]);
+				return "OK " + id + " " + Pdn.result(game.result());
+			} else if (command.equals("STATE")) {
+				return "OK " + id + " " + Pdn.fen(game.position()) + " " + Pdn.result(game.result());
+			} else if (command.equals("END")) {
+				end();
+				return "OK " + id;
+			}
+			return "ERR " + id + " unknown command " + words[0];
+		}
+	}
+
+	/*
+	 * Load test.
+	 */
+
+	/**
+	 * Open games on the server over a number of connections, all at
+	 * once, then play random moves in all of them until every game is
+	 * over. Each connection is driven by its replies: the reply to a
+	 * game's request sends that game's next one.
+	 * @return total moves played
+	 */
+	static long loadTest(int port, int games, int connections, long seed) throws Exception {
+		CountDownLatch done = new CountDownLatch(games);
+		List<LoadClient> clients = new ArrayList<LoadClient>();
+		for (int c=0; c<connections; c++) {
+			int count = games / connections + (c < games % connections ? 1 : 0);
+			clients.add(new LoadClient(port, count, new Random(seed + c), done));
+		}
+		System.out.println(games + " games open");
+		for (LoadClient client : clients) client.start();
+		done.await();
+		long moves = 0;
+		for (LoadClient client : clients) {
+			moves += client.moves;
+			client.close();
+		}
+		return moves;
+	}
+
+	/** One connection of the load test and the games it plays */
+	private static class LoadClient extends Thread implements Closeable {
+		private final Socket socket;
+		private final Writer out;
+		private final BufferedReader in;
+		private final Random rnd;
+		private final CountDownLatch done;
+		private final Map<String, String> sent = new HashMap<String, String>(); // game id -> request waiting for its reply
+		long moves;
+
+		LoadClient(int port, int games, Random rnd, CountDownLatch done) throws IOException {
+			socket = new Socket(InetAddress.getLoopbackAddress(), port);
+			socket.setTcpNoDelay(true);
+			out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), "US-ASCII"));
+			in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+			this.rnd = rnd;
+			this.done = done;
+			setDaemon(true);
+			for (int g=0; g<games; g++) out.write("NEW\n");
+			out.flush();
+			for (int g=0; g<games; g++) {
+				String line = in.readLine();
+				if (line == null || !line.startsWith("OK ")) throw new IOException("NEW failed: " + line);
+				sent.put(line.substring(3), "MOVES");
+			}
+		}
+
+		private void send(String command, String id, String rest) throws IOException {
+			sent.put(id, command);
+			out.write(command + " " + id + rest + "\n");
+		}
+
+		@Override
+		public void run() {
+			try {
+				for (String id : sent.keySet()) out.write("MOVES " + id + "\n");
+				out.flush();
+				String line;
+				while ((line = in.readLine()) != null) {
+					String[] words = line.split(" ");
+					if (!words[0].equals("OK")) throw new IOException(line);
+					String id = words[1], request = sent.get(id);
+					if (request.equals("MOVES")) {
+						moves++;
+						send("PLAY", id, " " + words[2 + rnd.nextInt(words.length - 2)]);
+					} else if (request.equals("PLAY")) {
+						if (words[2].equals("*")) send("MOVES", id, "");
+						else send("END", id, "");
+					} else {
+						sent.remove(id);
+						done.countDown();
+					}
+					// replies that are already in hand are answered before flushing
+					if (!in.ready()) out.flush();
+				}
+			} catch (IOException e) {
+				if (!socket.isClosed()) System.out.println("load test connection failed: " + e);
+			}
+		}
+
+		public void close() throws IOException {
+			socket.close();
+		}
+	}
+
+	/*
+	 * Move list check.
+	 */
+
+	// where the checked games start, in turn: the usual position, then positions
+	// where a single capture and a longer one end on the same square
+	private static final String[] CHECK_STARTS = {
+		null, "B:W7,8,14,15,16:BK10,K28,K32", "B:W7,11,16,18,25,26:BK14", "B:W6,14,25,26,27:BK24"
+	};
+
+	/**
+	 * Play random games of a variant on the server and, at every turn,
+	 * play each move MOVES lists in a game of its own started from the
+	 * same position, checking that STATE then shows the position the
+	 * move leads to. The first mismatch is printed.
+	 * @return number of listed moves checked, or -1 on a mismatch
+	 */
+	static long checkMoves(int port, Variant variant, int games, long seed) throws IOException {
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+			socket.setTcpNoDelay(true);
+			Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), "US-ASCII"));
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+			Random rnd = new Random(seed);
+			int[] moves = new int[Variant.BUFFER_SIZE];
+			Position next = new Position();
+			long checked = 0;
+			for (int g=0; g<games; g++) {
+				String start = CHECK_STARTS[g % CHECK_STARTS.length];
+				Game game = new Game(variant, start == null ? Position.start() : Pdn.parseFen(start));
+				while (!game.isOver()) {
+					String fen = Pdn.fen(game.position());
+					String id = request(out, in, "NEW " + variant + " " + fen)[1];
+					String[] listed = request(out, in, "MOVES " + id);
+					request(out, in, "END " + id);
+					int n = game.moves(moves);
+					if (listed.length - 2 != n) {
+						System.out.println(variant + " " + fen + ": MOVES lists " + (listed.length - 2) + " moves, not " + n);
+						return -1;
+					}
+					for (int i=0; i<n; i++) {
+						next.copyFrom(game.position());
+						next.apply(moves[i * Move.WIDTH], moves[i * Move.WIDTH + 1]);
+						id = request(out, in, "NEW " + variant + " " + fen)[1];
+						request(out, in, "PLAY " + id + " " + listed[i + 2]);
+						String state = request(out, in, "STATE " + id)[2];
+						request(out, in, "END " + id);
+						if (!state.equals(Pdn.fen(next))) {
+							System.out.println(variant + " " + fen + ": " + listed[i + 2] + " leads to " + state
+									+ ", not " + Pdn.fen(next));
+							return -1;
+						}
+						checked++;
+					}
+					int m = rnd.nextInt(n) * Move.WIDTH;
+					game.apply(moves[m], moves[m + 1]);
+				}
+			}
+			return checked;
+		}
+	}
+
+	/**
+	 * Open games and end each with more requests pipelined behind the
+	 * END, which must all be answered, with "no such game".
+	 * @return false if a reply was wrong or never came
+	 */
+	static boolean checkEnd(int port, int rounds) throws IOException {
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+			socket.setTcpNoDelay(true);
+			// a request left unanswered shows up as a timeout
+			socket.setSoTimeout(5000);
+			Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), "US-ASCII"));
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+			for (int r=0; r<rounds; r++) {
+				String id = request(out, in, "NEW")[1];
+				out.write("END " + id + "\n");
+				out.flush();
+				// the next requests arrive a varying moment later, so some of them
+				// land while the game is ending
+				for (long until = System.nanoTime() + (r % 64) * 1000; System.nanoTime() < until; ) { }
+				out.write("STATE " + id + "\nMOVES " + id + "\n");
+				out.flush();
+				// the connection may refuse a request before the game has answered END
+				List<String> expected = Arrays.asList("ERR " + id + " no such game", "ERR " + id + " no such game", "OK " + id);
+				List<String> replies = new ArrayList<String>();
+				try {
+					while (replies.size() < expected.size()) replies.add(in.readLine());
+				} catch (SocketTimeoutException e) {
+					replies.add("no reply");
+				}
+				Collections.sort(replies);
+				if (!replies.equals(expected)) {
+					System.out.println("END " + id + " pipelined: expected " + expected + ", got " + replies);
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	// send one request and wait for its reply, split into words
+	private static String[] request(Writer out, BufferedReader in, String line) throws IOException {
+		out.write(line);
+		out.write('\n');
+		out.flush();
+		String reply = in.readLine();
+		if (reply == null || !reply.startsWith("OK ")) throw new IOException(line + ": " + reply);
+		return reply.split(" ");
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length > 0 && args[0].equals("-check")) {
+			int games = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+			boolean ok = true;
+			try (GameServer server = new GameServer(0)) {
+				for (Variant variant : Variant.all()) {
+					long checked = checkMoves(server.port(), variant, games, 1);
+					System.out.println(variant + ": " + (checked < 0 ? "FAILED" : checked + " listed moves play back ok"));
+					ok &= checked >= 0;
+				}
+				// on many connections at once, so the games end while the connections are busy
+				int connections = 32, rounds = games * 250;
+				ExecutorService clients = Executors.newFixedThreadPool(connections);
+				List<Future<Boolean>> ends = new ArrayList<Future<Boolean>>();
+				for (int c=0; c<connections; c++) ends.add(clients.submit(() -> checkEnd(server.port(), rounds)));
+				boolean ended = true;
+				for (Future<Boolean> f : ends) ended &= f.get();
+				clients.shutdown();
+				System.out.println("END: " + (ended ? connections * rounds + " pipelined ends ok" : "FAILED"));
+				ok &= ended;
+			}
+			System.exit(ok ? 0 : 1);
+		}
+		if (args.length > 0 && args[0].equals("-load")) {
+			int games = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+			int connections = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+			int port = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+			try (GameServer server = new GameServer(port)) {
+				long start = System.nanoTime();
+				long moves = loadTest(server.port(), games, connections, 1);
+				double seconds = (System.nanoTime() - start) / 1e9;
+				System.out.printf("%d games, %d moves in %.1f s (%.0f moves/s)%n", games, moves, seconds, moves / seconds);
+			}
+			return;
+		}
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : PORT;
+		GameServer server = new GameServer(port);
+		System.out.println("serving games on localhost:" + server.port());
+		Thread.currentThread().join();
+	}
+}
@@ -0,0 +1,45 @@
+/**
+ * Static helpers for the primitive move encoding used by the engine.
+ *
+ * A move takes two consecutive ints in a move buffer:
+ *
+ *     moves[2*i]     from square | to square << 5
+ *     moves[2*i + 1] mask of the captured squares (0 for a simple move)
+ *
+ * Square numbers are the 0-31 indices used by Position. A multi-jump
+ * is a single move: it only needs its start, its final landing square
+ * and the set of pieces it removes to be applied. Under rules where a
+ * man crowned in the middle of a capture jumps on as a king (see
+ * CaptureResolver), such a move also has the CROWNED bit set.
+ */
+public final class Move {
+
+	// ints per move in a move buffer
+	public static final int WIDTH = 2;
+
+	/** Set when the moving man is crowned even if it does not end on the far row */
+	public static final int CROWNED = 1 << 10;
+
+	// not instantiable
+	private Move() { }
+
+	public static int encode(int from, int to) {
+		return from | (to << 5);
+	}
+
+	public static int from(int move) {
+		return move & 31;
+	}
+
+	public static int to(int move) {
+		return (move >>> 5) & 31;
+	}
+
+	/** Readable form of a move, e.g. "(2,2)-(3,3)" or "(2,2)x(6,2)" */
+	public static String toString(int move, int captured) {
+		int from = from(move), to = to(move);
+		return "(" + Position.row(from) + "," + Position.col(from) + ")"
+				+ (captured == 0 ? "-" : "x")
+				+ "(" + Position.row(to) + "," + Position.col(to) + ")";
+	}
+}
@@ -0,0 +1,118 @@
+/**
+ * This class lists every legal move for the side to move in a Position,
+ * following the same rules as Piece: men step and jump diagonally
+ * forward, kings one square in any diagonal direction, and a jump
+ * continues for as long as the jumping piece can capture again.
+ * Unlike Piece, captures are mandatory: when any jump exists, only
+ * jumps are returned.
+ *
+ * A man that reaches the far row is crowned and its move ends there,
+ * even in the middle of a capture sequence. Jump sequences are worked
+ * out by CaptureResolver.CHECKERS, which lists a capture once even
+ * when two paths lead to the same result.
+ *
+ * Moves are written into a caller-supplied buffer (see Move for the
+ * layout) and nothing is allocated per call, so the generator can sit
+ * in the inner loop of a search.
+ */
+public final class MoveGenerator {
+
+	/** Upper bound on the number of legal moves in any position */
+	public static final int MAX_MOVES = 128;
+
+	/** Size of a move buffer able to hold MAX_MOVES moves */
+	public static final int BUFFER_SIZE = MAX_MOVES * Move.WIDTH;
+
+	// not instantiable
+	private MoveGenerator() { }
+
+	/*
+	 * One step in each diagonal direction for every bit of a mask.
+	 * Up is towards row 7. Rows alternate between two layouts, so
+	 * each step is a pair of shifts masked by row parity, with the
+	 * squares that would fall off the side of the board masked out.
+	 */
+	static int upLeft(int b) {
+		return ((b & Position.EVEN_ROWS & ~Position.LEFT_EDGE) << 3) | ((b & Position.ODD_ROWS) << 4);
+	}
+
+	static int upRight(int b) {
+		return ((b & Position.EVEN_ROWS) << 4) | ((b & Position.ODD_ROWS & ~Position.RIGHT_EDGE) << 5);
+	}
+
+	static int downLeft(int b) {
+		return ((b & Position.EVEN_ROWS & ~Position.LEFT_EDGE) >>> 5) | ((b & Position.ODD_ROWS) >>> 4);
+	}
+
+	static int downRight(int b) {
+		return ((b & Position.EVEN_ROWS) >>> 4) | ((b & Position.ODD_ROWS & ~Position.RIGHT_EDGE) >>> 3);
+	}
+
+	/**
+	 * Fill moves with every legal move for the side to move.
+	 * @param p position to generate moves for
+	 * @param moves buffer of at least BUFFER_SIZE ints
+	 * @return number of moves written
+	 */
+	public static int generate(Position p, int[] moves) {
+		int n = generateJumps(p, moves);
+		if (n > 0) return n;
+		return generateSteps(p, moves);
+	}
+
+	/**
+	 * Fill moves with every complete jump sequence for the side to move.
+	 * @return number of moves written, 0 if no capture is available
+	 */
+	public static int generateJumps(Position p, int[] moves) {
+		return CaptureResolver.CHECKERS.resolve(p, moves);
+	}
+
+	/**
+	 * Fill moves with every non-capturing step for the side to move,
+	 * ignoring whether a capture is available.
+	 * @return number of moves written
+	 */
+	public static int generateSteps(Position p, int[] moves) {
+		boolean dark = p.darkToMove;
+		int own = dark ? p.dark : p.light;
+		int empty = ~(p.dark | p.light);
+		int n = 0;
+		while (own != 0) {
+			int from = Integer.numberOfTrailingZeros(own);
+			own &= own - 1;
+			int bit = 1 << from;
+			boolean king = (p.kings & bit) != 0;
+			int targets = 0;
+			if (king || dark) targets |= upLeft(bit) | upRight(bit);
+			if (king || !dark) targets |= downLeft(bit) | downRight(bit);
+			targets &= empty;
+			while (targets != 0) {
+				int to = Integer.numberOfTrailingZeros(targets);
+				targets &= targets - 1;
+				int i = n * Move.WIDTH;
+				moves[i] = Move.encode(from, to);
+				moves[i + 1] = 0;
+				n++;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Whether the side to move has any legal move, computed for all
+	 * pieces at once with a fixed number of mask operations.
+	 */
+	public static boolean hasMoves(Position p) {
+		boolean dark = p.darkToMove;
+		int own = dark ? p.dark : p.light;
+		int opp = dark ? p.light : p.dark;
+		int empty = ~(p.dark | p.light);
+		// pieces allowed to move up and down the board
+		int up = dark ? own : own & p.kings;
+		int down = dark ? own & p.kings : own;
+		if (((upLeft(up) | upRight(up) | downLeft(down) | downRight(down)) & empty) != 0) return true;
+		return ((upLeft(upLeft(up) & opp) | upRight(upRight(up) & opp)
+				| downLeft(downLeft(down) & opp) | downRight(downRight(down) & opp)) & empty) != 0;
+	}
+}
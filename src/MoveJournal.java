@@ -0,0 +1,174 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An append-only write-ahead journal of the moves of a game, so a game
+ * survives a crash without rewriting a full snapshot after every move.
+ *
+ * The file starts with a header holding the Snapshot the game began
+ * from (the starting position, or a loaded saved game), followed by one
+ * 6-byte record per completed move:
+ *
+ *     byte from square, byte to square, int captured mask
+ *
+ * Each record is written to the file as soon as the move is made, so
+ * it survives the process dying. Forcing it to the disk is batched
+ * (group commit): a background thread calls force() at most once per
+ * sync interval, and only if something was written since the last
+ * one, so a burst of moves costs a single fsync.
+ *
+ * To recover, read() returns the header snapshot and the moves, which
+ * are replayed on top of it. A record cut short by a crash is ignored.
+ */
+public class MoveJournal implements Closeable {
+
+	private static final int MAGIC = 0x434B4A4E; // "CKJN"
+	private static final int HEADER = 4 + Snapshot.SIZE;
+	private static final int RECORD = 6;
+
+	/** Default longest delay between a move and its fsync */
+	public static final long DEFAULT_SYNC_MILLIS = 50;
+
+	private final File file;
+	private final FileChannel channel;
+	private final ByteBuffer record = ByteBuffer.allocate(RECORD);
+	private final AtomicBoolean dirty = new AtomicBoolean();
+	private final ScheduledExecutorService syncer;
+
+	private MoveJournal(File file, FileChannel channel, long syncMillis) {
+		this.file = file;
+		this.channel = channel;
+		syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "journal-sync");
+			t.setDaemon(true);
+			return t;
+		});
+		syncer.scheduleWithFixedDelay(this::syncQuietly, syncMillis, syncMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Start a new journal, replacing any existing file.
+	 * @param base state the journaled moves are played from
+	 */
+	public static MoveJournal create(File file, Snapshot base, long syncMillis) throws IOException {
+		FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+		channel.truncate(0);
+		ByteBuffer header = ByteBuffer.allocate(HEADER);
+		header.putInt(MAGIC);
+		base.write(header);
+		header.flip();
+		while (header.hasRemaining()) channel.write(header);
+		channel.force(true);
+		return new MoveJournal(file, channel, syncMillis);
+	}
+
+	/**
+	 * Continue appending to an existing journal after recovering it,
+	 * dropping any partial record at its end.
+	 */
+	public static MoveJournal reopen(File file, long syncMillis) throws IOException {
+		FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+		long size = channel.size();
+		if (size < HEADER) {
+			channel.close();
+			throw new IOException(file + " has no journal header");
+		}
+		long end = HEADER + (size - HEADER) / RECORD * RECORD;
+		channel.truncate(end);
+		channel.position(end);
+		return new MoveJournal(file, channel, syncMillis);
+	}
+
+	/** The contents of a journal: where the game started and the moves since */
+	public static class Replay {
+		public final Snapshot base;
+		private final int[] moves;
+		private final int count;
+
+		Replay(Snapshot base, int[] moves, int count) {
+			this.base = base;
+			this.moves = moves;
+			this.count = count;
+		}
+
+		/** Number of moves in the journal */
+		public int size() {
+			return count;
+		}
+
+		/** Move i in the Move encoding */
+		public int move(int i) {
+			return moves[i * Move.WIDTH];
+		}
+
+		/** Squares captured by move i */
+		public int captured(int i) {
+			return moves[i * Move.WIDTH + 1];
+		}
+	}
+
+	/**
+	 * Read a journal for recovery.
+	 * @throws IOException if the file is missing or its header is damaged
+	 */
+	public static Replay read(File file) throws IOException {
+		try (FileChannel in = new RandomAccessFile(file, "r").getChannel()) {
+			ByteBuffer buf = ByteBuffer.allocate((int) Math.min(in.size(), Integer.MAX_VALUE));
+			while (buf.hasRemaining() && in.read(buf) >= 0) { }
+			buf.flip();
+			if (buf.remaining() < HEADER || buf.getInt() != MAGIC) throw new IOException(file + " is not a move journal");
+			Snapshot base = Snapshot.read(buf);
+			int count = buf.remaining() / RECORD;
+			int[] moves = new int[count * Move.WIDTH];
+			for (int i=0; i<count; i++) {
+				int from = buf.get(), to = buf.get();
+				moves[i * Move.WIDTH] = Move.encode(from & 31, to & 31);
+				moves[i * Move.WIDTH + 1] = buf.getInt();
+			}
+			return new Replay(base, moves, count);
+		}
+	}
+
+	/**
+	 * Append a completed move. The record reaches the file immediately
+	 * and the disk within the sync interval.
+	 */
+	public synchronized void append(int move, int captured) throws IOException {
+		record.clear();
+		record.put((byte) Move.from(move)).put((byte) Move.to(move)).putInt(captured);
+		record.flip();
+		while (record.hasRemaining()) channel.write(record);
+		dirty.set(true);
+	}
+
+	/** Force everything appended so far to the disk now */
+	public void sync() throws IOException {
+		if (dirty.getAndSet(false)) channel.force(false);
+	}
+
+	private void syncQuietly() {
+		try {
+			sync();
+		} catch (IOException e) {
+			System.out.println("journal sync failed: " + e);
+		}
+	}
+
+	/** Sync and close the journal, keeping the file */
+	public void close() throws IOException {
+		syncer.shutdownNow();
+		if (channel.isOpen()) {
+			sync();
+			channel.close();
+		}
+	}
+
+	/** Close the journal and remove the file, once the game no longer needs it */
+	public void delete() throws IOException {
+		close();
+		file.delete();
+	}
+}
@@ -0,0 +1,208 @@
+/**
+ * Standard checkers notation. The 32 playable squares are numbered
+ * 1 to 32, starting on the dark player's back rank, so the dark men
+ * begin on 1-12 and the light men on 21-32; a move is written as
+ * "11-15", and a capture as "15x22" or, for a multi-jump, "15x22x29".
+ *
+ * This numbering is what game records and the published openings use;
+ * it differs from the 0-31 square indices of Position, and these
+ * methods convert between the two.
+ */
+public final class Notation {
+
+	// not instantiable
+	private Notation() { }
+
+	/** Standard number (1-32) of a Position square index (0-31) */
+	public static int number(int square) {
+		return (square & ~3) + (3 - (square & 3)) + 1;
+	}
+
+	/** Position square index (0-31) of a standard number (1-32) */
+	public static int square(int number) {
+		int i = number - 1;
+		return (i & ~3) + (3 - (i & 3));
+	}
+
+	/**
+	 * A move in standard notation, e.g. "11-15" or "15x22"; a multi-jump
+	 * is written with every square it lands on, e.g. "15x22x29", so it
+	 * cannot be mistaken for another jump between the same squares.
+	 */
+	public static String toString(int move, int captured) {
+		return toString(null, move, captured);
+	}
+
+	/**
+	 * A move of a position in standard notation, like toString(move,
+	 * captured), but with the path of a multi-jump traced around the
+	 * other pieces on the board, so that find() reads every legal move
+	 * of the position back as itself.
+	 * @param p position the move is played in, or null if not known
+	 */
+	public static String toString(Position p, int move, int captured) {
+		if (Integer.bitCount(captured) > 1) {
+			int from = Move.from(move), to = Move.to(move);
+			// the capturing piece leaves its square, so it may land there again
+			int blocked = p == null ? captured : captured | (p.occupied() & ~(1 << from));
+			StringBuilder sb = new StringBuilder().append(number(from));
+			// short jumps first; a path of flying captures only if there is none
+			if (path(from, to, captured, blocked, false, sb)
+					|| path(from, to, captured, blocked, true, sb)) return sb.toString();
+		}
+		return number(Move.from(move)) + (captured == 0 ? "-" : "x") + number(Move.to(move));
+	}
+
+	// append the landing squares of a jump sequence from -> to over exactly the squares
+	// left to capture, stopping at blocked squares; captured pieces stay on the board
+	// until the end, so all of them block
+	private static boolean path(int from, int to, int left, int blocked, boolean flying, StringBuilder sb) {
+		if (left == 0) return from == to;
+		// down before up, as the squares were always tried
+		for (int i=0; i<4; i++) {
+			int d = (i + 2) & 3;
+			int over = Diagonals.step(from, d);
+			if (flying) {
+				while (over != Diagonals.NONE && (blocked & (1 << over)) == 0) over = Diagonals.step(over, d);
+			}
+			if (over == Diagonals.NONE || (left & (1 << over)) == 0) continue;
+			for (int land = Diagonals.step(over, d); land != Diagonals.NONE && (blocked & (1 << land)) == 0;
+					land = flying ? Diagonals.step(land, d) : Diagonals.NONE) {
+				int length = sb.length();
+				sb.append('x').append(number(land));
+				if (path(land, to, left & ~(1 << over), blocked, flying, sb)) return true;
+				sb.setLength(length);
+			}
+		}
+		return false;
+	}
+
+	/** Square jumped over between two squares (0-31), or -1 if they are not a jump apart */
+	public static int between(int from, int to) {
+		int fromRow = Position.row(from), toRow = Position.row(to);
+		int fromCol = Position.col(from), toCol = Position.col(to);
+		if (Math.abs(toRow - fromRow) != 2 || Math.abs(toCol - fromCol) != 2) return -1;
+		return Position.square((fromRow + toRow) / 2, (fromCol + toCol) / 2);
+	}
+
+	/** Mask of the squares strictly between two squares (0-31) on one diagonal, 0 if they are not on one */
+	static int line(int from, int to) {
+		int rows = Position.row(to) - Position.row(from), cols = Position.col(to) - Position.col(from);
+		if (rows == 0 || Math.abs(rows) != Math.abs(cols)) return 0;
+		int d = (rows > 0 ? 0 : 2) + (cols > 0 ? 1 : 0);
+		int mask = 0;
+		for (int sq = Diagonals.step(from, d); sq != to; sq = Diagonals.step(sq, d)) mask |= 1 << sq;
+		return mask;
+	}
+
+	/**
+	 * Find the legal move matching a move in standard notation.
+	 * A multi-jump written with all its squares must capture the pieces
+	 * along that path. With only the first and last squares, a capture of
+	 * the piece between them comes first, so whatever toString() writes
+	 * reads back as the same move; failing that, the first generated
+	 * move between them is taken, which is wrong only for the rare
+	 * multi-jumps that reach the same square by different paths.
+	 * @param p position the move is played in
+	 * @param text e.g. "11-15", "15x22" or "15x22x29"
+	 * @param moves scratch buffer of MoveGenerator.BUFFER_SIZE ints
+	 * @return offset of the move in moves, or -1 if it is not legal
+	 */
+	public static int find(Position p, CharSequence text, int[] moves) {
+		return find(Variant.CHECKERS, p, text, moves);
+	}
+
+	/**
+	 * Find the legal move matching a move in standard notation under
+	 * the rules of a variant. A flying king's capture may land anywhere
+	 * beyond the piece it takes, so the piece taken on each leg is the
+	 * opponent's piece between the two squares.
+	 * @param moves scratch buffer of Variant.BUFFER_SIZE ints
+	 * @return offset of the move in moves, or -1 if it is not legal
+	 */
+	public static int find(Variant variant, Position p, CharSequence text, int[] moves) {
+		int from = 0, to = 0, i = 0, len = text.length(), path = 0, squares = 0;
+		boolean first = true;
+		while (i < len) {
+			int number = 0;
+			boolean digits = false;
+			while (i < len && Character.isDigit(text.charAt(i))) {
+				number = number * 10 + (text.charAt(i++) - '0');
+				digits = true;
+			}
+			if (!digits || number < 1 || number > 32) return -1;
+			if (!first) {
+				path |= line(square(to == 0 ? from : to), square(number));
+				to = number;
+			} else {
+				from = number;
+			}
+			first = false;
+			squares++;
+			if (i < len) {
+				char c = text.charAt(i++);
+				if (c != '-' && c != 'x' && c != ':') return -1;
+			}
+		}
+		if (first || to == 0) return -1;
+		return find(variant, p, square(from), square(to), path, squares > 2, moves);
+	}
+
+	/**
+	 * Find the legal move matching one written as a list of squares.
+	 * The pieces it captures are the opponent's pieces on the lines
+	 * between the written squares.
+	 * @param crossed squares passed over between the written squares (see line())
+	 * @param wholePath true if every square the move lands on was written;
+	 *        if only its two ends were, the move capturing what lies
+	 *        between them comes first, and any move between them will do
+	 * @param moves scratch buffer of Variant.BUFFER_SIZE ints
+	 * @return offset of the move in moves, or -1 if it is not legal
+	 */
+	public static int find(Variant variant, Position p, int from, int to, int crossed, boolean wholePath, int[] moves) {
+		int captured = crossed & (p.darkToMove() ? p.light() : p.dark());
+		int n = variant.generate(p, moves), any = -1;
+		for (int i=0; i<n; i++) {
+			int move = moves[i * Move.WIDTH];
+			if (Move.from(move) != from || Move.to(move) != to) continue;
+			if (moves[i * Move.WIDTH + 1] == captured) return i * Move.WIDTH;
+			if (any < 0) any = i * Move.WIDTH;
+		}
+		return wholePath ? -1 : any;
+	}
+
+	/**
+	 * Find the legal move between two squares.
+	 * @return offset of the move in moves, or -1 if it is not legal
+	 */
+	public static int find(Position p, int from, int to, int[] moves) {
+		return find(p, from, to, 0, moves);
+	}
+
+	/**
+	 * Find the legal move between two squares that captures the given
+	 * squares.
+	 * @param captured squares the move captures, or 0 to accept any
+	 * @return offset of the move in moves, or -1 if it is not legal
+	 */
+	public static int find(Position p, int from, int to, int captured, int[] moves) {
+		return find(Variant.CHECKERS, p, from, to, captured, moves);
+	}
+
+	/**
+	 * Find the legal move of a variant between two squares that
+	 * captures the given squares.
+	 * @param captured squares the move captures, or 0 to accept any
+	 * @param moves scratch buffer of Variant.BUFFER_SIZE ints
+	 * @return offset of the move in moves, or -1 if it is not legal
+	 */
+	public static int find(Variant variant, Position p, int from, int to, int captured, int[] moves) {
+		int n = variant.generate(p, moves);
+		for (int i=0; i<n; i++) {
+			int move = moves[i * Move.WIDTH];
+			if (Move.from(move) == from && Move.to(move) == to
+					&& (captured == 0 || moves[i * Move.WIDTH + 1] == captured)) return i * Move.WIDTH;
+		}
+		return -1;
+	}
+}
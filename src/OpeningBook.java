@@ -0,0 +1,249 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+ * An opening book: for positions reached in the first moves of known
+ * games, the moves that were played there and how often. The computer
+ * player consults it before searching, so the early game costs no
+ * search time.
+ *
+ * The builder reads game records, one game per line in standard
+ * notation (see Notation), e.g.
+ *
+ *     1. 11-15 23-19 2. 8-11 22-17 1-0
+ *
+ * Move numbers and results are skipped. Archives in PDN (files ending
+ * in .pdn) are read as well, streaming, one game at a time; games that
+ * start from a set-up position or are of another variant are skipped. Each game is replayed from the
+ * starting position up to a ply limit, and every (position, move) pair
+ * is counted. A game stops contributing at its first illegal move.
+ *
+ * The book file is a header followed by fixed-size entries sorted by
+ * the position's Zobrist key:
+ *
+ *     long key, int move (Move encoding), int captured, int weight
+ *
+ * It is opened through a read-only memory mapping, so every game
+ * process on a host shares the one copy held in the page cache, and a
+ * lookup is a binary search over the mapped entries.
+ *
+ * Usage:
+ *     java OpeningBook output maxPlies records...
+ */
+public class OpeningBook {
+
+	private static final int MAGIC = 0x434B4F42; // "CKOB"
+	private static final int VERSION = 1;
+	private static final int HEADER = 12;
+	private static final int ENTRY = 20;
+
+	private final MappedByteBuffer data;
+	private final int count;
+
+	private OpeningBook(MappedByteBuffer data, int count) {
+		this.data = data;
+		this.count = count;
+	}
+
+	/** Number of (position, move) entries */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Open a book file.
+	 * @throws IOException if the file is missing or not a book
+	 */
+	public static OpeningBook open(File file) throws IOException {
+		try (FileChannel in = new RandomAccessFile(file, "r").getChannel()) {
+			if (in.size() > Integer.MAX_VALUE) throw new IOException(file + " is too large to map");
+			MappedByteBuffer data = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+			if (in.size() < HEADER || data.getInt(0) != MAGIC) throw new IOException(file + " is not an opening book");
+			if (data.getInt(4) != VERSION) throw new IOException(file + " has unsupported version " + data.getInt(4));
+			return new OpeningBook(data, data.getInt(8));
+		}
+	}
+
+	private long key(int i) {
+		return data.getLong(HEADER + i * ENTRY);
+	}
+
+	// first entry whose key is not below the given one
+	private int lowerBound(long key) {
+		int lo = 0, hi = count;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (key(mid) < key) lo = mid + 1;
+			else hi = mid;
+		}
+		return lo;
+	}
+
+	/**
+	 * Pick a book move for a position, at random in proportion to how
+	 * often each move was played. Moves that are not legal in the
+	 * position (a key collision) are ignored.
+	 * @return {move, captured}, or null if the position is not in the book
+	 */
+	public int[] pick(Position p, Random rnd) {
+		int[] moves = new int[MoveGenerator.BUFFER_SIZE];
+		int first = lowerBound(p.hash);
+		long total = 0;
+		int last = first;
+		for (; last < count && key(last) == p.hash; last++) {
+			if (legal(p, last, moves)) total += data.getInt(HEADER + last * ENTRY + 16);
+		}
+		if (total == 0) return null;
+		long r = (long) (rnd.nextDouble() * total);
+		for (int i=first; i<last; i++) {
+			if (!legal(p, i, moves)) continue;
+			r -= data.getInt(HEADER + i * ENTRY + 16);
+			if (r < 0) {
+				return new int[] { data.getInt(HEADER + i * ENTRY + 8), data.getInt(HEADER + i * ENTRY + 12) };
+			}
+		}
+		return null;
+	}
+
+	private boolean legal(Position p, int i, int[] moves) {
+		int move = data.getInt(HEADER + i * ENTRY + 8), captured = data.getInt(HEADER + i * ENTRY + 12);
+		int n = MoveGenerator.generate(p, moves);
+		for (int m=0; m<n; m++) {
+			if (moves[m * Move.WIDTH] == move && moves[m * Move.WIDTH + 1] == captured) return true;
+		}
+		return false;
+	}
+
+	/*
+	 * Building.
+	 */
+
+	// one (position, move) pair while building
+	private static class Key {
+		final long hash;
+		final int move;
+		final int captured;
+
+		Key(long hash, int move, int captured) {
+			this.hash = hash;
+			this.move = move;
+			this.captured = captured;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) return false;
+			Key k = (Key) o;
+			return hash == k.hash && move == k.move && captured == k.captured;
+		}
+
+		@Override
+		public int hashCode() {
+			return Long.hashCode(hash) * 31 + move * 17 + captured;
+		}
+	}
+
+	/** Collects the moves of game records and writes them out as a book */
+	public static class Builder {
+		private final int maxPlies;
+		private final Map<Key, Integer> weights = new HashMap<Key, Integer>();
+		private final int[] moves = new int[MoveGenerator.BUFFER_SIZE];
+		private int games;
+
+		/**
+		 * @param maxPlies how many plies of each game to record
+		 */
+		public Builder(int maxPlies) {
+			this.maxPlies = maxPlies;
+		}
+
+		/** Add one game given as moves in standard notation */
+		public void addGame(String record) {
+			Position p = Position.start();
+			int plies = 0;
+			for (String token : record.trim().split("\\s+")) {
+				if (plies >= maxPlies) break;
+				// skip move numbers such as "12." and results such as "1-0"
+				if (token.isEmpty() || token.endsWith(".") || token.equals("*")
+						|| token.equals("1-0") || token.equals("0-1") || token.equals("1/2-1/2")) continue;
+				int m = Notation.find(p, token, moves);
+				if (m < 0) break;
+				weights.merge(new Key(p.hash, moves[m], moves[m + 1]), 1, Integer::sum);
+				p.apply(moves[m], moves[m + 1]);
+				plies++;
+			}
+			games++;
+		}
+
+		/** Add a game read from a PDN archive */
+		public void addGame(PdnGame game) {
+			if (game.standardStart() && game.error() == null && game.variant() == Variant.CHECKERS) {
+				Position p = Position.start();
+				for (int i=0; i<game.size() && i<maxPlies; i++) {
+					int m = game.find(i, p, moves);
+					if (m < 0) break;
+					weights.merge(new Key(p.hash, moves[m], moves[m + 1]), 1, Integer::sum);
+					p.apply(moves[m], moves[m + 1]);
+				}
+			}
+			games++;
+		}
+
+		/** Add every game in a PDN archive */
+		public void addPdn(File file) throws IOException {
+			try (PdnReader in = new PdnReader(new FileInputStream(file))) {
+				PdnGame game = new PdnGame();
+				while (in.next(game)) addGame(game);
+			}
+		}
+
+		/** Add every game in a file, one per line */
+		public void addGames(File file) throws IOException {
+			try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+				String line;
+				while ((line = in.readLine()) != null) {
+					if (!line.trim().isEmpty()) addGame(line);
+				}
+			}
+		}
+
+		/** Number of games added so far */
+		public int games() {
+			return games;
+		}
+
+		/** Write the book, entries sorted by key and then by weight */
+		public void write(File file) throws IOException {
+			List<Map.Entry<Key, Integer>> entries = new ArrayList<Map.Entry<Key, Integer>>(weights.entrySet());
+			entries.sort((a, b) -> a.getKey().hash != b.getKey().hash
+					? Long.compare(a.getKey().hash, b.getKey().hash)
+					: Integer.compare(b.getValue(), a.getValue()));
+			ByteBuffer buf = ByteBuffer.allocate(HEADER + entries.size() * ENTRY);
+			buf.putInt(MAGIC).putInt(VERSION).putInt(entries.size());
+			for (Map.Entry<Key, Integer> e : entries) {
+				buf.putLong(e.getKey().hash).putInt(e.getKey().move).putInt(e.getKey().captured).putInt(e.getValue());
+			}
+			buf.flip();
+			try (FileChannel out = new RandomAccessFile(file, "rw").getChannel()) {
+				out.truncate(0);
+				while (buf.hasRemaining()) out.write(buf);
+			}
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3) {
+			System.out.println("usage: java OpeningBook output maxPlies records...");
+			System.exit(1);
+		}
+		Builder builder = new Builder(Integer.parseInt(args[1]));
+		for (int i=2; i<args.length; i++) {
+			if (args[i].endsWith(".pdn")) builder.addPdn(new File(args[i]));
+			else builder.addGames(new File(args[i]));
+		}
+		builder.write(new File(args[0]));
+		System.out.println("wrote " + builder.weights.size() + " entries from " + builder.games() + " games to " + args[0]);
+	}
+}
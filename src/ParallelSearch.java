@@ -0,0 +1,107 @@
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Lazy SMP: several Search threads work on the same root position and
+ * share one lock-free TranspositionTable. There is no work splitting;
+ * the threads help each other only through the table, where each one
+ * finds results the others have already computed. Half of the helpers
+ * start their iterative deepening one ply deeper, so the threads do
+ * not all walk the tree in lockstep.
+ *
+ * The calling thread runs the main search. When it finishes, the
+ * helpers are stopped, and the move of whichever thread completed the
+ * deepest iteration is played. The reported node count is the total
+ * over all threads.
+ */
+public class ParallelSearch {
+
+	private final TranspositionTable table;
+	private final Search[] searches;
+	private final ExecutorService helpers;
+	// raised once the main search is done, seen by helpers even if they start late
+	private final AtomicBoolean stop = new AtomicBoolean();
+
+	/**
+	 * Construct a parallel search.
+	 * @param threads number of search threads, including the caller's
+	 * @param tableMegabytes memory cap of the shared transposition table
+	 */
+	public ParallelSearch(int threads, int tableMegabytes) {
+		if (threads < 1) throw new IllegalArgumentException("need at least one thread: " + threads);
+		table = new TranspositionTable(tableMegabytes);
+		searches = new Search[threads];
+		for (int i=0; i<threads; i++) {
+			searches[i] = new Search(table);
+			searches[i].setHelper(i, i == 0 ? null : stop);
+		}
+		helpers = threads == 1 ? null : Executors.newFixedThreadPool(threads - 1, r -> {
+			Thread t = new Thread(r, "search-helper");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/** Number of search threads, including the caller's */
+	public int threads() {
+		return searches.length;
+	}
+
+	/**
+	 * Find a move for the side to move.
+	 * @param root position to search
+	 * @param millis time budget for the move
+	 */
+	public Search.Result search(Position root, long millis) {
+		Future<?>[] running = new Future<?>[searches.length];
+		Search.Result[] results = new Search.Result[searches.length];
+		stop.set(false);
+		for (int i=1; i<searches.length; i++) {
+			final int id = i;
+			final Position copy = new Position();
+			copy.copyFrom(root);
+			running[i] = helpers.submit(() -> results[id] = searches[id].search(copy, millis));
+		}
+		results[0] = searches[0].search(root, millis);
+
+		// the main search is done: stop the helpers and collect their results
+		stop.set(true);
+		for (int i=1; i<searches.length; i++) {
+			try {
+				running[i].get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("search helper failed", e.getCause());
+			}
+		}
+
+		Search.Result best = results[0];
+		long nodes = 0;
+		for (Search.Result r : results) {
+			if (r == null) continue;
+			nodes += r.nodes;
+			if (r.hasMove() && r.depth > best.depth) best = r;
+		}
+		return new Search.Result(best.move, best.captured, best.score, best.depth, nodes, results[0].nanos);
+	}
+
+	/** Use endgame databases in every thread, or null for none */
+	public void setTablebase(Tablebase tablebase) {
+		for (Search search : searches) {
+			search.setTablebase(tablebase);
+		}
+	}
+
+	/** Score leaves with the given weights in every thread */
+	public void setEvaluator(Evaluator evaluator) {
+		for (Search search : searches) {
+			search.setEvaluator(evaluator);
+		}
+	}
+
+	/** Release the helper threads */
+	public void shutdown() {
+		if (helpers != null) helpers.shutdownNow();
+	}
+}
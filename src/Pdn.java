@@ -0,0 +1,310 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Portable Draughts Notation, the usual interchange format for
+ * checkers games: a few tags such as [Event "..."] and [Result "1-0"],
+ * then the moves in standard notation (see Notation), e.g.
+ *
+ *     [Event "Club match"]
+ *     [Result "1-0"]
+ *
+ *     1. 11-15 23-19 2. 8-11 22-17 1-0
+ *
+ * A game that does not begin from the usual position carries it in a
+ * FEN tag, "side:Wsquares:Bsquares" with K in front of kings, e.g.
+ * [FEN "B:W18,24,K27:B12,16,K22"]. As in all PDN, the dark side is
+ * called Black and moves first, and "1-0" is a win for it.
+ *
+ * The GameType tag names the rules: 21 for checkers, the default, and
+ * 23, 25 and 26 for the other Variants (pool, Russian and Brazilian);
+ * games are written and replayed under the rules they name.
+ *
+ * This class writes games and FEN, and validates whole archives:
+ * one thread reads games with a PdnReader while the others replay
+ * them against the rules, passing a fixed pool of reused PdnGame
+ * records between them, so memory stays bounded however big the
+ * archive is.
+ *
+ * Usage:
+ *     java Pdn [-threads n] archive...
+ */
+public final class Pdn {
+
+	// not instantiable
+	private Pdn() { }
+
+	/** Game termination marker for a PdnGame result */
+	public static String result(int result) {
+		switch (result) {
+		case PdnGame.DARK_WINS: return "1-0";
+		case PdnGame.LIGHT_WINS: return "0-1";
+		case PdnGame.DRAW: return "1/2-1/2";
+		default: return "*";
+		}
+	}
+
+	/** FEN of a position, e.g. "B:W21,22,K23:B1,2,3" */
+	public static String fen(Position p) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(p.darkToMove() ? 'B' : 'W');
+		sb.append(":W");
+		appendSquares(sb, p.light(), p.kings());
+		sb.append(":B");
+		appendSquares(sb, p.dark(), p.kings());
+		return sb.toString();
+	}
+
+	// squares in increasing standard number
+	private static void appendSquares(StringBuilder sb, int pieces, int kings) {
+		boolean first = true;
+		for (int number=1; number<=32; number++) {
+			int sq = Notation.square(number);
+			if ((pieces & (1 << sq)) == 0) continue;
+			if (!first) sb.append(',');
+			if ((kings & (1 << sq)) != 0) sb.append('K');
+			sb.append(number);
+			first = false;
+		}
+	}
+
+	/**
+	 * Read a FEN. Ranges of squares ("1-12") are accepted, as some
+	 * programs write them, and so is a final period.
+	 * @throws IllegalArgumentException if the text is not a FEN
+	 */
+	public static Position parseFen(CharSequence fen) {
+		int dark = 0, light = 0, kings = 0;
+		int i = 0, n = fen.length();
+		while (i < n && fen.charAt(i) == ' ') i++;
+		if (i == n) throw new IllegalArgumentException("empty FEN");
+		char side = Character.toUpperCase(fen.charAt(i++));
+		if (side != 'B' && side != 'W') throw new IllegalArgumentException("bad FEN side to move: " + fen);
+		while (i < n) {
+			char c = Character.toUpperCase(fen.charAt(i++));
+			if (c == ':' || c == ' ' || c == '.') continue;
+			if (c != 'B' && c != 'W') throw new IllegalArgumentException("bad FEN: " + fen);
+			boolean black = c == 'B';
+			while (i < n && fen.charAt(i) != ':') {
+				c = Character.toUpperCase(fen.charAt(i));
+				if (c == ',' || c == ' ' || c == '.') {
+					i++;
+					continue;
+				}
+				boolean king = c == 'K';
+				if (king) i++;
+				int from = 0, to;
+				while (i < n && Character.isDigit(fen.charAt(i))) from = from * 10 + (fen.charAt(i++) - '0');
+				to = from;
+				if (i < n && fen.charAt(i) == '-') {
+					i++;
+					to = 0;
+					while (i < n && Character.isDigit(fen.charAt(i))) to = to * 10 + (fen.charAt(i++) - '0');
+				}
+				if (from < 1 || to > 32 || from > to) throw new IllegalArgumentException("bad FEN square: " + fen);
+				for (int number=from; number<=to; number++) {
+					int bit = 1 << Notation.square(number);
+					if (black) dark |= bit;
+					else light |= bit;
+					if (king) kings |= bit;
+				}
+			}
+		}
+		if ((dark & light) != 0) throw new IllegalArgumentException("FEN puts two pieces on one square: " + fen);
+		return new Position(dark, light, kings, side == 'B');
+	}
+
+	/**
+	 * Write one game of checkers.
+	 * @param tags tags to write first, in order, e.g. Event and Date
+	 * @param start position the game began from
+	 * @param moves the moves, Move.WIDTH ints each as made by MoveGenerator
+	 * @param count number of moves
+	 * @param result a PdnGame result
+	 */
+	public static void write(Appendable out, Map<String, String> tags, Position start,
+			int[] moves, int count, int result) throws IOException {
+		write(out, tags, Variant.CHECKERS.pdnGameType(), start, moves, count, result);
+	}
+
+	/**
+	 * Write one game of any variant.
+	 * @param gameType value of the GameType tag, e.g. 21 for checkers
+	 */
+	public static void write(Appendable out, Map<String, String> tags, int gameType, Position start,
+			int[] moves, int count, int result) throws IOException {
+		for (Map.Entry<String, String> tag : tags.entrySet()) {
+			writeTag(out, tag.getKey(), tag.getValue());
+		}
+		writeTag(out, "GameType", Integer.toString(gameType));
+		writeTag(out, "Result", result(result));
+		if (!start.equals(Position.start())) writeTag(out, "FEN", fen(start));
+		out.append('\n');
+
+		StringBuilder line = new StringBuilder();
+		boolean dark = start.darkToMove();
+		int number = 1;
+		// followed move by move, so each multi-jump is written around the pieces in its way
+		Position p = new Position();
+		p.copyFrom(start);
+		for (int i=0; i<count; i++) {
+			String token = Notation.toString(p, moves[i * Move.WIDTH], moves[i * Move.WIDTH + 1]);
+			p.apply(moves[i * Move.WIDTH], moves[i * Move.WIDTH + 1]);
+			if (dark) token = number + ". " + token;
+			else if (i == 0) token = number + "... " + token;
+			if (!dark) number++;
+			dark = !dark;
+			// wrap the move text at 80 columns
+			if (line.length() > 0 && line.length() + 1 + token.length() > 80) {
+				out.append(line).append('\n');
+				line.setLength(0);
+			}
+			if (line.length() > 0) line.append(' ');
+			line.append(token);
+		}
+		String end = result(result);
+		if (line.length() > 0 && line.length() + 1 + end.length() > 80) {
+			out.append(line).append('\n');
+			line.setLength(0);
+		}
+		if (line.length() > 0) line.append(' ');
+		out.append(line).append(end).append("\n\n");
+	}
+
+	private static void writeTag(Appendable out, String name, String value) throws IOException {
+		out.append('[').append(name).append(" \"");
+		out.append(value.replace("\\", "\\\\").replace("\"", "\\\"")).append("\"]\n");
+	}
+
+	/*
+	 * Validation.
+	 */
+
+	/** Totals from validating an archive */
+	public static class Stats {
+		long games, legal, illegal, unreadable, plies;
+
+		public long games() { return games; }
+		public long legal() { return legal; }
+		public long illegal() { return illegal; }
+		public long unreadable() { return unreadable; }
+		public long plies() { return plies; }
+
+		void add(Stats s) {
+			games += s.games;
+			legal += s.legal;
+			illegal += s.illegal;
+			unreadable += s.unreadable;
+			plies += s.plies;
+		}
+
+		@Override
+		public String toString() {
+			return games + " games: " + legal + " legal, " + illegal + " with an illegal move, "
+					+ unreadable + " unreadable; " + plies + " plies replayed";
+		}
+	}
+
+	private static final PdnGame END = new PdnGame();
+	private static final int RECORDS_PER_THREAD = 64;
+
+	/**
+	 * Read an archive and replay every game on the given number of
+	 * threads. The first problems found are reported to log.
+	 * @throws IllegalStateException if replaying a game fails with an
+	 *         exception; the first such failure is the cause
+	 */
+	public static Stats validate(InputStream in, int threads, PrintStream log) throws IOException, InterruptedException {
+		int records = RECORDS_PER_THREAD * threads;
+		BlockingQueue<PdnGame> free = new ArrayBlockingQueue<PdnGame>(records);
+		BlockingQueue<PdnGame> work = new ArrayBlockingQueue<PdnGame>(records + threads);
+		for (int i=0; i<records; i++) free.add(new PdnGame());
+		Stats[] stats = new Stats[threads];
+		int[] reported = { 0 };
+		AtomicReference<IllegalStateException> failure = new AtomicReference<IllegalStateException>();
+		Thread[] workers = new Thread[threads];
+		for (int t=0; t<threads; t++) {
+			Stats s = stats[t] = new Stats();
+			workers[t] = new Thread(() -> {
+				Position p = new Position();
+				int[] buffer = new int[Variant.BUFFER_SIZE];
+				try {
+					for (PdnGame game; (game = work.take()) != END; ) {
+						try {
+							// after a failure the rest is only drained
+							if (failure.get() != null) continue;
+							s.games++;
+							String problem = null;
+							if (game.error() != null) {
+								s.unreadable++;
+								problem = game.error();
+							} else {
+								int played = game.replay(p, buffer);
+								s.plies += played;
+								if (played == game.size()) {
+									s.legal++;
+								} else {
+									s.illegal++;
+									problem = "illegal move " + (played + 1) + " ("
+											+ Notation.number(game.from(played)) + (game.capture(played) ? "x" : "-")
+											+ Notation.number(game.to(played)) + ")";
+								}
+							}
+							if (problem != null) {
+								synchronized (reported) {
+									if (reported[0]++ < 10) log.println("game " + game.number() + ": " + problem);
+								}
+							}
+						} catch (Throwable e) {
+							failure.compareAndSet(null, new IllegalStateException("game " + game.number() + ": " + e, e));
+						} finally {
+							// always handed back, or the reader would wait for it forever
+							free.put(game);
+						}
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}, "pdn-" + t);
+			workers[t].start();
+		}
+		try (PdnReader reader = new PdnReader(in)) {
+			PdnGame game = free.take();
+			while (failure.get() == null && reader.next(game)) {
+				work.put(game);
+				game = free.take();
+			}
+		} finally {
+			for (int t=0; t<threads; t++) work.put(END);
+			for (Thread w : workers) w.join();
+		}
+		if (failure.get() != null) throw failure.get();
+		Stats total = new Stats();
+		for (Stats s : stats) total.add(s);
+		return total;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int threads = Runtime.getRuntime().availableProcessors();
+		List<String> files = new ArrayList<String>();
+		for (int i=0; i<args.length; i++) {
+			if (args[i].equals("-threads") && i+1 < args.length) threads = Integer.parseInt(args[++i]);
+			else files.add(args[i]);
+		}
+		if (files.isEmpty()) {
+			System.out.println("usage: java Pdn [-threads n] archive...");
+			System.exit(1);
+		}
+		boolean ok = true;
+		for (String file : files) {
+			long start = System.nanoTime();
+			Stats s = validate(new FileInputStream(file), threads, System.out);
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.out.printf("%s: %s in %.1f s (%.0f games/s)%n", file, s, seconds, s.games() / seconds);
+			ok &= s.illegal() == 0 && s.unreadable() == 0;
+		}
+		System.exit(ok ? 0 : 1);
+	}
+}
@@ -0,0 +1,134 @@
+/**
+ * One game read from a PDN archive by PdnReader: the variant (from its
+ * GameType tag), the starting position (from its FEN tag, if any), the
+ * moves as written, and the result.
+ *
+ * A record is meant to be reused for game after game, so reading an
+ * archive allocates next to nothing; the move array only grows when a
+ * game is longer than any before it.
+ */
+public class PdnGame {
+
+	/** Results, from the PDN game termination marker */
+	public static final int UNKNOWN = 0, DARK_WINS = 1, LIGHT_WINS = 2, DRAW = 3;
+
+	/** Position in the archive: 1 for the first game */
+	long number;
+	/** Starting position from the FEN tag, or null for the usual start */
+	Position start;
+	/** Rules from the GameType tag, checkers if there is none */
+	Variant variant = Variant.CHECKERS;
+	int result;
+	/** Set when the game contains something the reader cannot replay */
+	String error;
+
+	// per move: from square, to square, CAPTURE and WHOLE_PATH flags,
+	// and the squares passed over between the squares written
+	private static final int WIDTH = 4;
+	private static final int CAPTURE = 1, WHOLE_PATH = 2;
+	private int[] moves = new int[WIDTH * 128];
+	private int count;
+
+	/** Empty the record for the next game */
+	void clear() {
+		start = null;
+		variant = Variant.CHECKERS;
+		result = UNKNOWN;
+		error = null;
+		count = 0;
+	}
+
+	void add(int from, int to, boolean capture, boolean wholePath, int crossed) {
+		if (WIDTH * count == moves.length) moves = java.util.Arrays.copyOf(moves, 2 * moves.length);
+		moves[WIDTH * count] = from;
+		moves[WIDTH * count + 1] = to;
+		moves[WIDTH * count + 2] = (capture ? CAPTURE : 0) | (wholePath ? WHOLE_PATH : 0);
+		moves[WIDTH * count + 3] = crossed;
+		count++;
+	}
+
+	public long number() {
+		return number;
+	}
+
+	/** Starting position: the FEN tag, or the usual start */
+	public Position start() {
+		return start == null ? Position.start() : start;
+	}
+
+	/** True if the game begins from the usual starting position */
+	public boolean standardStart() {
+		return start == null;
+	}
+
+	/** Rules the game is played by */
+	public Variant variant() {
+		return variant;
+	}
+
+	public int result() {
+		return result;
+	}
+
+	/** Why the game cannot be replayed, or null */
+	public String error() {
+		return error;
+	}
+
+	/** Number of moves (plies) */
+	public int size() {
+		return count;
+	}
+
+	/** Square (0-31) move i starts from */
+	public int from(int i) {
+		return moves[WIDTH * i];
+	}
+
+	/** Square (0-31) move i ends on */
+	public int to(int i) {
+		return moves[WIDTH * i + 1];
+	}
+
+	/** True if move i was written as a capture */
+	public boolean capture(int i) {
+		return (moves[WIDTH * i + 2] & CAPTURE) != 0;
+	}
+
+	/** True if every square move i lands on was written, not just its two ends */
+	public boolean wholePath(int i) {
+		return (moves[WIDTH * i + 2] & WHOLE_PATH) != 0;
+	}
+
+	/** Squares passed over between the squares written for move i */
+	public int crossed(int i) {
+		return moves[WIDTH * i + 3];
+	}
+
+	/**
+	 * Find the legal move matching move i as written, under the rules
+	 * of the game (see Notation.find()).
+	 * @param p position the move is played in
+	 * @param buffer scratch buffer of Variant.BUFFER_SIZE ints
+	 * @return offset of the move in buffer, or -1 if it is not legal
+	 */
+	public int find(int i, Position p, int[] buffer) {
+		return Notation.find(variant, p, from(i), to(i), crossed(i), wholePath(i), buffer);
+	}
+
+	/**
+	 * Play the game through, checking every move against the rules.
+	 * @param p receives the starting position, and then each move in turn
+	 * @param buffer scratch buffer of Variant.BUFFER_SIZE ints
+	 * @return number of moves that were legal; size() if all were
+	 */
+	public int replay(Position p, int[] buffer) {
+		p.copyFrom(start());
+		for (int i=0; i<count; i++) {
+			int m = find(i, p, buffer);
+			if (m < 0 || (buffer[m + 1] != 0) != capture(i)) return i;
+			p.apply(buffer[m], buffer[m + 1]);
+		}
+		return count;
+	}
+}
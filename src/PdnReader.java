@@ -0,0 +1,255 @@
+import java.io.*;
+
+/**
+ * A streaming reader for PDN (Portable Draughts Notation) archives.
+ * Games are read one at a time into a reused PdnGame, straight from the
+ * bytes of the stream through a fixed buffer, so an archive of any size
+ * is read in constant memory and without creating objects per move.
+ *
+ * Only what replaying a game needs is kept: the FEN and GameType tags
+ * (checkers, or one of the other Variants),
+ * the moves and the game termination marker. Other tags, comments
+ * {...} and ;..., variations (...), NAGs $n, move numbers and move
+ * strength marks (! ?) are skipped. Moves must be in numeric notation
+ * ("11-15", "15x22", "15x22x29" or "15:22"); a game in any other
+ * notation is read to its end and flagged with an error.
+ *
+ * The text is taken to be ASCII (or Latin-1); other bytes only ever
+ * appear inside skipped tags and comments.
+ */
+public class PdnReader implements Closeable {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final InputStream in;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private int pos, limit;
+	private long games;
+
+	// reused for the name and value of each tag
+	private final StringBuilder tagName = new StringBuilder();
+	private final StringBuilder tagValue = new StringBuilder();
+
+	public PdnReader(InputStream in) {
+		this.in = in;
+	}
+
+	private int peek() throws IOException {
+		if (pos == limit) {
+			limit = in.read(buffer, 0, buffer.length);
+			pos = 0;
+			if (limit <= 0) {
+				limit = 0;
+				return -1;
+			}
+		}
+		return buffer[pos] & 0xFF;
+	}
+
+	private int read() throws IOException {
+		int c = peek();
+		if (c >= 0) pos++;
+		return c;
+	}
+
+	/**
+	 * Read the next game.
+	 * @param game record to fill, cleared first
+	 * @return false at the end of the archive
+	 */
+	public boolean next(PdnGame game) throws IOException {
+		game.clear();
+		boolean any = false; // seen a tag or a move
+		boolean moves = false; // seen a move
+		int c;
+		while ((c = peek()) >= 0) {
+			if (c <= ' ') {
+				pos++;
+			} else if (c == '[') {
+				// a tag after the moves starts the next game
+				if (moves) break;
+				pos++;
+				readTag(game);
+				any = true;
+			} else if (c == '{') {
+				skipPast('}');
+			} else if (c == ';') {
+				skipPast('\n');
+			} else if (c == '(') {
+				skipVariation();
+			} else if (c == '$') {
+				pos++;
+				while ((c = peek()) >= '0' && c <= '9') pos++;
+			} else if (c == '*') {
+				pos++;
+				any = true;
+				break;
+			} else if (c >= '0' && c <= '9') {
+				any = true;
+				if (readToken(game)) break;
+				moves |= game.size() > 0;
+			} else {
+				// a move in another notation, or stray text
+				any = true;
+				moves = true;
+				if (game.error == null) game.error = "unsupported text '" + (char) c + "'";
+				skipToken();
+			}
+		}
+		if (!any) return false;
+		game.number = ++games;
+		return true;
+	}
+
+	/**
+	 * Read a token starting with a digit: a move number, a move or a
+	 * result. Numbers are decoded as they are read, without building a
+	 * string.
+	 * @return true if the token was a result, which ends the game
+	 */
+	private boolean readToken(PdnGame game) throws IOException {
+		int first = -1, number = 0, numbers = 0, last = -1, path = 0;
+		boolean digits = false, capture = false, dash = false, slash = false, dot = false;
+		int c;
+		while ((c = peek()) >= 0 && c > ' ' && c != '{' && c != '(' && c != '[' && c != ';' && c != '$') {
+			pos++;
+			if (c >= '0' && c <= '9') {
+				number = number * 10 + (c - '0');
+				digits = true;
+				continue;
+			}
+			if (c == '.') {
+				// "12." or "12..." is a move number, possibly run into the move
+				first = -1;
+				last = -1;
+				path = 0;
+				number = 0;
+				numbers = 0;
+				digits = false;
+				capture = dash = slash = false;
+				dot = true;
+				continue;
+			}
+			if (c == '!' || c == '?') continue;
+			if (!digits) {
+				if (game.error == null) game.error = "bad move " + (game.size() + 1);
+				skipToken();
+				return false;
+			}
+			if (c == '-') dash = true;
+			else if (c == 'x' || c == ':') capture = true;
+			else if (c == '/') slash = true;
+			else {
+				if (game.error == null) game.error = "bad move " + (game.size() + 1);
+				skipToken();
+				return false;
+			}
+			if (first < 0) first = number;
+			path = addLeg(path, last, number);
+			last = number;
+			numbers++;
+			number = 0;
+			digits = false;
+		}
+		if (numbers == 0) {
+			// only a move number, or a bare number
+			if (!dot && digits && game.error == null) game.error = "stray number " + number;
+			return false;
+		}
+		if (slash || (dash && numbers == 1 && first <= 2 && number <= 2)) {
+			// 1-0, 0-1, 2-0, 0-2, 1-1, 1/2-1/2
+			if (slash || first == number) game.result = PdnGame.DRAW;
+			else game.result = first > number ? PdnGame.DARK_WINS : PdnGame.LIGHT_WINS;
+			return true;
+		}
+		if (!digits || first < 1 || first > 32 || number < 1 || number > 32) {
+			if (game.error == null) game.error = "bad square in move " + (game.size() + 1);
+			return false;
+		}
+		path = addLeg(path, last, number);
+		game.add(Notation.square(first), Notation.square(number), capture, numbers > 1, path);
+		return false;
+	}
+
+	// add the squares passed over between two numbered squares of a path; a flying
+	// king's capture may pass over several, so the replay picks out the piece taken
+	private static int addLeg(int path, int from, int to) {
+		if (from < 1 || from > 32 || to < 1 || to > 32) return path;
+		return path | Notation.line(Notation.square(from), Notation.square(to));
+	}
+
+	// [Name "value"]
+	private void readTag(PdnGame game) throws IOException {
+		tagName.setLength(0);
+		tagValue.setLength(0);
+		int c;
+		while ((c = peek()) >= 0 && c <= ' ') pos++;
+		while ((c = peek()) > ' ' && c != '"' && c != ']') {
+			tagName.append((char) c);
+			pos++;
+		}
+		while ((c = read()) >= 0 && c != '"' && c != ']') { }
+		if (c == '"') {
+			while ((c = read()) >= 0 && c != '"') {
+				if (c == '\\') c = read();
+				tagValue.append((char) c);
+			}
+			skipPast(']');
+		}
+		if (contentEquals(tagName, "FEN")) {
+			try {
+				game.start = Pdn.parseFen(tagValue);
+			} catch (IllegalArgumentException e) {
+				game.error = e.getMessage();
+			}
+		} else if (contentEquals(tagName, "GameType")) {
+			// the game number comes first, e.g. "21" or "21,B,8,8,N2,0"; 21 is English draughts
+			if (tagValue.length() > 0) {
+				int type = 0, i = 0;
+				while (i < tagValue.length() && Character.isDigit(tagValue.charAt(i))) type = type * 10 + (tagValue.charAt(i++) - '0');
+				try {
+					if (i == 0 || i > 3 || (i < tagValue.length() && tagValue.charAt(i) != ',')) throw new IllegalArgumentException();
+					game.variant = Variant.forPdnGameType(type);
+				} catch (IllegalArgumentException e) {
+					game.error = "unsupported game type " + tagValue;
+				}
+			}
+		}
+	}
+
+	private static boolean contentEquals(StringBuilder sb, String s) {
+		if (sb.length() != s.length()) return false;
+		for (int i=0; i<s.length(); i++) {
+			if (sb.charAt(i) != s.charAt(i)) return false;
+		}
+		return true;
+	}
+
+	private void skipPast(int end) throws IOException {
+		int c;
+		while ((c = read()) >= 0 && c != end) { }
+	}
+
+	private void skipVariation() throws IOException {
+		int depth = 0, c;
+		while ((c = read()) >= 0) {
+			if (c == '{') skipPast('}');
+			else if (c == '(') depth++;
+			else if (c == ')' && --depth == 0) return;
+		}
+	}
+
+	private void skipToken() throws IOException {
+		int c;
+		while ((c = peek()) > ' ' && c != '{' && c != '(' && c != '[' && c != ';') pos++;
+	}
+
+	/** Number of games read so far */
+	public long games() {
+		return games;
+	}
+
+	public void close() throws IOException {
+		in.close();
+	}
+}
@@ -0,0 +1,162 @@
+/**
+ * Perft ("performance test") counts the leaf nodes of the full game
+ * tree to a fixed depth. The counts only match the published figures
+ * if the move rules are exactly right, which makes perft a correctness
+ * oracle for MoveGenerator and the Variant generators, and the time it
+ * takes is a throughput figure for the whole rules engine.
+ *
+ * Usage:
+ *     java Perft [depth] [-divide] [-variant name]   count from the starting position
+ *     java Perft -verify [depth]                     check the known counts below,
+ *                                                    to depth 10 unless given
+ *
+ * With -divide the count below each root move is printed as well.
+ * The Maven build runs -verify as its test, and fails on a mismatch.
+ */
+public class Perft {
+
+	/**
+	 * Known node counts from the starting position, indexed by depth,
+	 * as in Aart Bik's published perft table for English checkers.
+	 * Captures that reach the same result by different paths count
+	 * once; from depth 12 on that makes a difference. Depths 11 and 12
+	 * take a while and are only checked by "-verify 12".
+	 */
+	static final long[] START_COUNTS = {
+		1L, 7L, 49L, 302L, 1469L, 7361L, 36768L, 179740L,
+		845931L, 3963680L, 18391564L, 85242128L, 388617999L
+	};
+
+	/**
+	 * Counts from the starting position for the other variants, checked
+	 * against a plain board-array implementation of their rules.
+	 */
+	static final long[] RUSSIAN_COUNTS = {
+		1L, 7L, 49L, 302L, 1469L, 7482L, 37986L, 190146L,
+		929899L, 4570586L, 22444032L
+	};
+	static final long[] BRAZILIAN_COUNTS = {
+		1L, 7L, 49L, 302L, 1469L, 7473L, 37628L, 187302L,
+		907830L, 4431766L, 21560022L
+	};
+	static final long[] POOL_COUNTS = {
+		1L, 7L, 49L, 302L, 1469L, 7482L, 37986L, 190146L,
+		929896L, 4570534L, 22435955L
+	};
+
+	// deepest level checked by -verify unless told otherwise; deeper levels take a while
+	private static final int VERIFY_DEPTH = 10;
+
+	private final Variant variant;
+	// one position and one move buffer per ply, reused across calls
+	private final Position[] positions;
+	private final int[][] moves;
+
+	/**
+	 * Construct a checkers perft counter able to search the given depth.
+	 * @param maxDepth
+	 */
+	public Perft(int maxDepth) {
+		this(Variant.CHECKERS, maxDepth);
+	}
+
+	/**
+	 * Construct a perft counter for a variant able to search the given depth.
+	 * @param variant
+	 * @param maxDepth
+	 */
+	public Perft(Variant variant, int maxDepth) {
+		this.variant = variant;
+		positions = new Position[maxDepth + 1];
+		moves = new int[maxDepth + 1][Variant.BUFFER_SIZE];
+		for (int i=0; i<=maxDepth; i++) {
+			positions[i] = new Position();
+		}
+	}
+
+	/** Number of leaf nodes depth plies below p */
+	public long count(Position p, int depth) {
+		if (depth == 0) return 1;
+		int[] buf = moves[depth];
+		int n = variant.generate(p, buf);
+		// the leaves are the moves themselves, no need to play them
+		if (depth == 1) return n;
+		Position child = positions[depth];
+		long total = 0;
+		for (int i=0; i<n; i++) {
+			child.copyFrom(p);
+			child.apply(buf[i * Move.WIDTH], buf[i * Move.WIDTH + 1]);
+			total += count(child, depth - 1);
+		}
+		return total;
+	}
+
+	/** Count like count(), printing the subtotal below each root move */
+	public long divide(Position p, int depth) {
+		if (depth == 0) return 1;
+		int[] buf = new int[Variant.BUFFER_SIZE];
+		int n = variant.generate(p, buf);
+		Position child = new Position();
+		long total = 0;
+		for (int i=0; i<n; i++) {
+			int move = buf[i * Move.WIDTH], captured = buf[i * Move.WIDTH + 1];
+			child.copyFrom(p);
+			child.apply(move, captured);
+			long sub = count(child, depth - 1);
+			System.out.println(Move.toString(move, captured) + " " + sub);
+			total += sub;
+		}
+		return total;
+	}
+
+	// checks every known count up to a depth, returns false on a mismatch
+	private static boolean verify(int depth) {
+		boolean ok = verify(Variant.CHECKERS, START_COUNTS, depth);
+		ok &= verify(Variant.RUSSIAN, RUSSIAN_COUNTS, depth);
+		ok &= verify(Variant.BRAZILIAN, BRAZILIAN_COUNTS, depth);
+		ok &= verify(Variant.POOL, POOL_COUNTS, depth);
+		return ok;
+	}
+
+	private static boolean verify(Variant variant, long[] counts, int toDepth) {
+		int maxDepth = Math.min(toDepth, counts.length - 1);
+		Perft perft = new Perft(variant, maxDepth);
+		boolean ok = true;
+		for (int depth=1; depth<=maxDepth; depth++) {
+			long start = System.nanoTime();
+			long nodes = perft.count(Position.start(), depth);
+			long micros = Math.max(1, (System.nanoTime() - start) / 1000);
+			boolean match = nodes == counts[depth];
+			ok &= match;
+			System.out.println(variant + " depth " + depth + ": " + nodes
+					+ (match ? " ok" : " FAILED, expected " + counts[depth])
+					+ " (" + nodes * 1000000L / micros + " nodes/s)");
+		}
+		return ok;
+	}
+
+	public static void main(String[] args) {
+		int depth = 7;
+		boolean divide = false;
+		Variant variant = Variant.CHECKERS;
+		for (int i=0; i<args.length; i++) {
+			String arg = args[i];
+			if (arg.equals("-verify")) {
+				int verifyDepth = i+1 < args.length ? Integer.parseInt(args[i+1]) : VERIFY_DEPTH;
+				System.exit(verify(verifyDepth) ? 0 : 1);
+			} else if (arg.equals("-divide")) {
+				divide = true;
+			} else if (arg.equals("-variant") && i+1 < args.length) {
+				variant = Variant.forName(args[++i]);
+			} else {
+				depth = Integer.parseInt(arg);
+			}
+		}
+		Perft perft = new Perft(variant, depth);
+		long start = System.nanoTime();
+		long nodes = divide ? perft.divide(Position.start(), depth) : perft.count(Position.start(), depth);
+		long micros = Math.max(1, (System.nanoTime() - start) / 1000);
+		System.out.println(variant + " perft(" + depth + ") = " + nodes + " in " + micros / 1000 + " ms, "
+				+ nodes * 1000000L / micros + " nodes/s");
+	}
+}
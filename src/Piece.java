@@ -5,8 +5,10 @@
  * location, and whether it is selected, capturing, or crowned.
  * Each piece can also see the board instance variable 
  * maintained by the GUI to check for move validity. 
- * A piece knows how to draw itself (implemented for you)
- * and toggle its selected boolean. 
+ * A piece can toggle its selected boolean; drawing is 
+ * left to the GUI, so the rules run without a display.
+ * The rule checks find neighboring and jump squares in the
+ * tables of Diagonals instead of computing them each time.
  * 
  * Your main task with this class is to implement a move method
  * that respects the rules of the game. You'll probably want
@@ -51,29 +53,7 @@ public class Piece {
 		this.col = col;
 		this.selected = selected;
 		this.capturing = capturing;
-		this.king = false;
-	}
-
-	/**
-	 * Draw correctly-colored circle at correct coordinates.
-	 * Circle should be outlined in yellow if selected 
-	 * or magenta if jumping.
-	 */
-	public void draw() {
-		double y = row+.5, x = col+.5; // add .5 to center
-		if (selected) { // draw slightly larger yellow circle underneath
-			StdDraw.setPenColor(StdDraw.YELLOW);
-			if (capturing) StdDraw.setPenColor(StdDraw.MAGENTA);
-			StdDraw.filledCircle(x,y,.45);						
-		}
-		// draw a circle at the correct place with correct color
-		StdDraw.setPenColor(player?StdDraw.RED:StdDraw.LIGHT_GRAY);
-		StdDraw.filledCircle(x,y,.4);
-
-		// draw image over kings
-		if (king) 
-			StdDraw.picture(x,y,"crown.png",.5,.5);
-
+		this.king = king;
 	}
 
 	public String toString(){
@@ -92,96 +72,43 @@ public class Piece {
 		
 		return all;
 	}
-	//simply determines whether we are in the scope of the board
-	private boolean isLegit(int newRow, int newCol){
-		if(newRow <= 7 && newRow >= 0){
-			if(newCol <= 7 && newCol >= 0){
-				return true;
-			}
-		}
-		return false;
+	//our own square: always a playable one, so no need for the checks in Position.square
+	private int square(){
+		return (row << 2) | (col >> 1);
 	}
 
-	//isValid is a helper method that determines whether or not the space we want to move to
-	//or capture is empty or not
-	private boolean isValid(int rowDel, int colDel){
-		if(board[row + rowDel][col + colDel] == null){
-			return true;
-		}else if(board[row+rowDel][col+colDel].player == !player){
-			if(isLegit(row+(2*rowDel), col+(2*colDel))){
-				if(board[row+(2*rowDel)][col+(2*colDel)] == null){
-					return true;
-				}
-			}
-		}
-		return false;
+	//the piece on a square of the board, or null
+	private Piece at(int square){
+		return board[Position.row(square)][Position.col(square)];
+	}
+
+	//the directions this piece may move in, one bit each (see Diagonals)
+	private int directions(){
+		return Diagonals.directions(player, king);
 	}
 
 	//hasValidMove is a method that checks that the piece we selected is one that can be moved
 	//i.e. it has a capture available, or it is allowed to move foward/backwards
 	public boolean hasValidMove(){
-		//checks if the piece that you selected is a king and moves accordingly
-		int rowDelta1 = 1;
-		int rowDelta2 = -1;
-		int colDelta1 = 1;
-		int colDelta2 = -1;
-		if(king){
-
-			if(isLegit(row + rowDelta1, col + colDelta1)){
-				if(isValid(rowDelta1, colDelta1)){
-					return true;
-				}
-			}
-
-			if(isLegit(row + rowDelta1, col + colDelta2)){
-				if(isValid(rowDelta1, colDelta2)){
-					return true;
-				}
-			}
-
-			if(isLegit(row + rowDelta2, col + colDelta1)){
-				if(isValid(rowDelta2, colDelta1)){
-					return true;
-				}
-			}
-
-			if(isLegit(row + rowDelta2, col + colDelta2)){
-				if(isValid(rowDelta2, colDelta2)){
-					return true;
-				}
-			}
-		}
-		//checks for possible moves that the red team may make
-		else if(player){
-			if(isLegit(row+rowDelta1,col + colDelta1)){
-				if(isValid(rowDelta1, colDelta1)){
-					return true;
-				}	
-			}
-
-			if(isLegit(row+rowDelta1, col + colDelta2)){
-				if(isValid(rowDelta1, colDelta2)){
-					return true;
-				}
-			}
-			//checks for possible moves that the black team may make
-		}else if(player == false){
-			if(isLegit(row + rowDelta2,col + colDelta1)){
-				if(isValid(rowDelta2, colDelta1)){
-					return true;
-				}
-			}
-
-			if(isLegit(row+rowDelta2, col + colDelta2)){
-				if(isValid(rowDelta2, colDelta2)){
+		int square = square();
+		for(int d=0; d<4; d++){
+			if((directions() & 1 << d) == 0) continue;
+			int next = Diagonals.step(square, d);
+			if(next == Diagonals.NONE) continue;
+			//the space next to us is empty, or holds an enemy we can jump
+			Piece piece = at(next);
+			if(piece == null){
+				return true;
+			}else if(piece.player != player){
+				int landing = Diagonals.jump(square, d);
+				if(landing != Diagonals.NONE && at(landing) == null){
 					return true;
 				}
 			}
 		}
-
 		return false;
-
 	}
+
 	/** 
 	 * Stub method for moving:  check whether the target
 	 * spot is available, and if so, update location and
@@ -190,110 +117,27 @@ public class Piece {
 
 	//confirms that the movement we make will be a valid one by checking the move
 	//case that is not a capture
-	private boolean confirmMove(int newRow, int newCol){
-		if(king){
-			if(newRow == row + 1 || newRow == row - 1){
-				if(newCol == col + 1 || newCol == col - 1){
-					return true;
-				}
-			}
-		}
-		if(player){
-			if(newRow == row + 1){
-				if(newCol == col + 1 || newCol == col - 1){
-					return true;
-				}
-			}
-		}else if(!player){
-			if(newRow == row - 1){
-				if(newCol == col + 1 || newCol == col - 1){
-					return true;
-				}
-			}
-		}
-		return false;
-	}
-
-
-	//confirms whether or not there is a piece at the specific point on the board so 
-	//that we may capture it
-
-	private int hasCapture(int newRow, int newCol){
-		int rowDelta1 = 1;
-		int rowDelta2 = -1;
-		int colDelta1 = 1;
-		int colDelta2 = -1;
-		if(king){
-			if(isLegit(newRow, newCol)){
-				if(newRow == row + (2*rowDelta1) && newCol == col + (2*colDelta1)){
-					if(board[row + rowDelta1][col + colDelta1].player == !player)
-						return 1;
-				}else if(newRow == row + (2*rowDelta1) && newCol == col + (2*colDelta2)){
-					if(board[row + rowDelta1][col + colDelta2].player == !player)
-						return 2;
-				}else if(newRow == row + (2*rowDelta2) && newCol == col + (2*colDelta1)){
-					if(board[row + rowDelta2][col + colDelta1].player == !player)
-						return 3;
-				}else if(newRow == row + (2*rowDelta2) && newCol == col + (2*colDelta2)){
-					if(board[row + rowDelta2][col + colDelta2].player == !player)
-						return 4;
-				}
-			}
-			//we are checking the values between our selected new row & column and seeing if they
-			//have an opposing piece, if they do we return true
-		}
-		else if(player){
-			//sees whether or not there is a piece available for capture if player red
-			if(isLegit(newRow, newCol)){
-				if(newRow == row + (2*rowDelta1) && newCol == col + (2*colDelta1)){
-					if(board[row + rowDelta1][col + colDelta1].player == !player)
-						return 1;
-				}else if(newRow == row + (2*rowDelta1) && newCol == col + (2*colDelta2)){
-					if(board[row + rowDelta1][col + colDelta2].player == !player)
-						return 2;
-				}
-			}
-		}else if(!player){
-			//sees whether or not there is a piece available for capture if player red
-			if(isLegit(newRow, newCol)){
-				if(newRow == row + (2*rowDelta2) && newCol == col + (2*colDelta1)){
-					if(board[row + rowDelta2][col + colDelta1].player == !player)
-						return 3;
-				}else if(newRow == row + (2*rowDelta2) && newCol == col + (2*colDelta2)){
-					if(board[row + rowDelta2][col + colDelta2].player == !player)
-						return 4;
-				}
-			}
-		}
-		//if we cant find such a piece we will return 0
-		return 0;
+	private boolean confirmMove(int target){
+		int d = Diagonals.stepDirection(square(), target);
+		return d != Diagonals.NONE && (directions() & 1 << d) != 0;
 	}
 
-	//confirms that we move 2 spaces to a valid point
-	private boolean twoSpace(int newRow, int newCol){
-		if(newRow == row + 2 || newRow == row - 2){
-			if(newCol == col + 2 || newCol == col -2){
-				return true;
-			}
-		}
-		return false;
+	//finds the direction of a jump to the target over an enemy piece, or Diagonals.NONE
+	//if there is no such jump
+	private int captureDirection(int target){
+		int square = square();
+		int d = Diagonals.jumpDirection(square, target);
+		if(d == Diagonals.NONE || (directions() & 1 << d) == 0) return Diagonals.NONE;
+		//an empty space in between is nothing to capture
+		Piece between = at(Diagonals.step(square, d));
+		if(between == null || between.player == player) return Diagonals.NONE;
+		return d;
 	}
 
-	//capture method
-	private void capture(int newRow, int newCol){
-		int rowDelta1 = 1;
-		int rowDelta2 = -1;
-		int colDelta1 = 1;
-		int colDelta2 = -1;
-		if(hasCapture(newRow, newCol) == 1){
-			board[row + rowDelta1][col + colDelta1] = null;
-		}else if(hasCapture(newRow, newCol) == 2){
-			board[row + rowDelta1][col + colDelta2] = null;
-		}else if(hasCapture(newRow, newCol) == 3){
-			board[row + rowDelta2][col + colDelta1] = null;
-		}else if(hasCapture(newRow, newCol) == 4){
-			board[row + rowDelta2][col + colDelta2] = null;
-		}
+	//capture method: jump in direction d, taking the piece in between
+	private void capture(int d, int newRow, int newCol){
+		int captured = Diagonals.step(square(), d);
+		board[Position.row(captured)][Position.col(captured)] = null;
 		board[newRow][newCol] = board[row][col];
 		board[row][col] = null;
 		row = newRow;
@@ -304,75 +148,51 @@ public class Piece {
 	//main move stub
 	public void move(int newRow, int newCol) {
 		capturing = false;
+		boolean moved = false;
 		if (board[newRow][newCol] == null) {
-			if(confirmMove(newRow, newCol)){
+			int target = Position.square(newRow, newCol);
+			if(target == Diagonals.NONE){
+				// not a square a piece can stand on
+			}else if(confirmMove(target)){
 				// move from current to new spot on the board
 				board[newRow][newCol] = board[row][col];
 				board[row][col] = null;
 				// update location instance variables
 				row = newRow;
 				col = newCol;
-			}else if(twoSpace(newRow, newCol)){
-				// become king if reach far side
-				if(hasCapture(newRow, newCol) != 0){
-					capture(newRow, newCol);
+				moved = true;
+			}else{
+				int d = captureDirection(target);
+				if(d != Diagonals.NONE){
+					capture(d, newRow, newCol);
+					moved = true;
 					if (captureAvail())
 						capturing = true;
 				}
 			}
-			//what is this
-			if (newRow==(player?7:0)) 
+			// become king if we actually reached the far side; a refused move changes nothing
+			if (moved && newRow==(player?7:0) && !king) {
 				king = true;
+			}
 		}
 	}
 
-	//determines whether or not that the point we clicked is null and 2 spaces apart
-	//then it also determines whether or not that the space we want to capture holds an
-	//enemy piece
-	private boolean isCapturable(int rowDelta, int colDelta){
-		if(isLegit(row+(2*rowDelta), col+(2*colDelta))){
-			if(board[row+(2*rowDelta)][col+(2*colDelta)] == null){
-				if(board[row+rowDelta][col + colDelta] == null){
-					return false;
-				}else if(board[row+rowDelta][col + colDelta].player == !player){
-					return true;
-				}
-			}
+	//determines whether or not the space 2 away in direction d is empty and the
+	//space in between holds an enemy piece we could capture
+	private boolean isCapturable(int square, int d){
+		int landing = Diagonals.jump(square, d);
+		if(landing != Diagonals.NONE && at(landing) == null){
+			Piece between = at(Diagonals.step(square, d));
+			return between != null && between.player != player;
 		}
 		return false;
 	}
 	
 	//switches our boolean value to true if we are able to perform another capture
 	private boolean captureAvail() {
-		int rowDelta1 = 1;
-		int rowDelta2 = -1;
-		int colDelta1 = 1;
-		int colDelta2 = -1;
-		if(king){
-			if(isCapturable(rowDelta1, colDelta1)){
-				return true;
-			}
-			if(isCapturable(rowDelta1, colDelta2)){
-				return true;
-			}
-			if(isCapturable(rowDelta2, colDelta1)){
-				return true;
-			}
-			if(isCapturable(rowDelta2, colDelta2)){
-				return true;
-			}
-		}else if(player){
-			if(isCapturable(rowDelta1, colDelta1)){
-				return true;
-			}
-			if(isCapturable(rowDelta1, colDelta2)){
-				return true;
-			}
-		}else if(!player){
-			if(isCapturable(rowDelta2, colDelta1)){
-				return true;
-			}
-			if(isCapturable(rowDelta2, colDelta2)){
+		int square = square();
+		for(int d=0; d<4; d++){
+			if((directions() & 1 << d) != 0 && isCapturable(square, d)){
 				return true;
 			}
 		}
@@ -384,6 +204,25 @@ public class Piece {
 		return capturing;
 	}
 
+	//way to access the location when recording a move
+	public int getRow(){
+		return row;
+	}
+
+	public int getCol(){
+		return col;
+	}
+
+	//way to access king when converting the board to a Position
+	public boolean isKing(){
+		return king;
+	}
+
+	//way to access selected when drawing the piece
+	public boolean isSelected(){
+		return selected;
+	}
+
 	//determines if the move we are looking for is at a null space then this is valid
 	public boolean legal(int newRow, int newCol, int rowDelta, int colDelta){
 		if(newRow == row + rowDelta && newCol == col + colDelta){
@@ -393,84 +232,15 @@ public class Piece {
 		return false;
 	}
 	
-	//if this point that we clicked on is valid then we will be able to move
+	//if this point that we clicked on is valid then we will be able to move:
+	//a step in one of our directions, or a jump over an enemy piece, to an empty space
 	public boolean isValidMove(int newRow, int newCol){
-		int rowDelta1 = 1;
-		int rowDelta2 = -1;
-		int colDelta1 = 1;
-		int colDelta2 = -1;
-		if(king){
-			//if king then all these moves are valid
-			if(isLegit(newRow, newCol)){
-				if(legal(newRow, newCol, rowDelta1, colDelta1))
-					return true;
-			}
-			if(isLegit(newRow, newCol)){
-				if(legal(newRow, newCol, rowDelta1, colDelta2))
-					return true;
-			}
-			if(isLegit(newRow, newCol)){
-				if(legal(newRow, newCol, rowDelta2, colDelta1))
-					return true;
-			}
-			if(isLegit(newRow, newCol)){
-				if(legal(newRow, newCol, rowDelta2, colDelta2))
-					return true;
-			}
-			if(isLegit(newRow, newCol)){
-				if(legal(newRow, newCol, 2*rowDelta1, 2*colDelta1))
-					return true;
-			}
-			if(isLegit(newRow, newCol)){
-				if(legal(newRow, newCol, 2*rowDelta1, 2*colDelta2))
-					return true;
-			}
-			if(isLegit(newRow, newCol)){
-				if(legal(newRow, newCol, 2*rowDelta2, 2*colDelta1))
-					return true;
-			}
-			if(isLegit(newRow, newCol)){
-				if(legal(newRow, newCol, 2*rowDelta2, 2*colDelta2))
-					return true;
-			}
-		}else if(player){
-			//case for if we are player is this then a valid move?
-			if(isLegit(newRow, newCol)){
-				if(legal(newRow, newCol, rowDelta1, colDelta1))
-					return true;
-			}
-			if(isLegit(newRow, newCol)){
-				if(legal(newRow, newCol, rowDelta1, colDelta2))
-					return true;
-			}
-			if(isLegit(newRow, newCol)){
-				if(legal(newRow, newCol, 2*rowDelta1, 2*colDelta1))
-					return true;
-			}
-			if(isLegit(newRow, newCol)){
-				if(legal(newRow, newCol, 2*rowDelta1, 2*colDelta2))
-					return true;
-			}
-		}else if(!player){
-			//case for if we are !player is this then a valid move?
-			if(isLegit(newRow, newCol)){
-				if(legal(newRow, newCol, rowDelta2, colDelta1))
-					return true;
-			}
-			if(isLegit(newRow, newCol)){
-				if(legal(newRow, newCol, rowDelta2, colDelta2))
-					return true;
-			}
-			if(isLegit(newRow, newCol)){
-				if(legal(newRow, newCol, 2*rowDelta2, 2*colDelta1))
-					return true;
-			}
-			if(isLegit(newRow, newCol)){
-				if(legal(newRow, newCol, 2*rowDelta2, 2*colDelta2))
-					return true;
-			}
-		}
-		return false;
+		int target = Position.square(newRow, newCol);
+		if(target == Diagonals.NONE) return false;
+		int d = Diagonals.stepDirection(square(), target);
+		if(d == Diagonals.NONE) d = captureDirection(target);
+		if(d == Diagonals.NONE || (directions() & 1 << d) == 0) return false;
+		return legal(newRow, newCol, newRow - row, newCol - col);
 	}
 
 
@@ -0,0 +1,275 @@
+/**
+ * This class is a compact bitboard representation of a checkers
+ * position. Only the 32 dark squares of the board can ever hold a
+ * piece, so each one gets a bit in an int mask:
+ *
+ *     square = row*4 + col/2
+ *
+ * Square 0 is the lower left corner (row 0, col 0) and square 31 is
+ * the upper right corner (row 7, col 7). Three masks hold the whole
+ * position: the dark ("true") pieces, the light ("false") pieces and
+ * the kings of either color. A boolean records whose turn it is.
+ *
+ * A Position has no object graph to chase, so the engine classes work
+ * on it directly. A search can make and unmake moves on one Position
+ * in place, keeping undo records on an UndoStack. The GUI keeps its
+ * Piece[][] board; fromBoard() and toBoard() convert between the two
+ * representations.
+ */
+public final class Position {
+
+	/** Number of playable squares */
+	public static final int SQUARES = 32;
+
+	/** Squares on rows 0, 2, 4, 6 and on rows 1, 3, 5, 7 */
+	static final int EVEN_ROWS = 0x0F0F0F0F;
+	static final int ODD_ROWS = 0xF0F0F0F0;
+	/** Squares on the left (col 0) and right (col 7) edges */
+	static final int LEFT_EDGE = 0x01010101;
+	static final int RIGHT_EDGE = 0x80808080;
+	/** Rows where dark and light men are crowned */
+	static final int DARK_KING_ROW = 0xF0000000;
+	static final int LIGHT_KING_ROW = 0x0000000F;
+
+	// piece masks, one bit per square
+	int dark;
+	int light;
+	int kings;
+	// true when the dark player moves next
+	boolean darkToMove;
+	// Zobrist key, kept up to date by apply()
+	long hash;
+
+	/**
+	 * Construct an empty position with dark to move.
+	 */
+	public Position() {
+		darkToMove = true;
+	}
+
+	/**
+	 * Construct a position from its three masks and side to move.
+	 * @param dark
+	 * @param light
+	 * @param kings
+	 * @param darkToMove
+	 */
+	public Position(int dark, int light, int kings, boolean darkToMove) {
+		this.dark = dark;
+		this.light = light;
+		this.kings = kings;
+		this.darkToMove = darkToMove;
+		hash = Zobrist.hash(this);
+	}
+
+	/** The standard starting position: 12 men each, dark to move */
+	public static Position start() {
+		return new Position(0x00000FFF, 0xFFF00000, 0, true);
+	}
+
+	/** Overwrite this position with the contents of another one */
+	public void copyFrom(Position other) {
+		dark = other.dark;
+		light = other.light;
+		kings = other.kings;
+		darkToMove = other.darkToMove;
+		hash = other.hash;
+	}
+
+	/**
+	 * Play a move in place and pass the turn to the other player.
+	 * @param move from/to squares in the Move encoding
+	 * @param captured mask of the squares whose pieces are removed
+	 */
+	public void apply(int move, int captured) {
+		int from = Move.from(move), to = Move.to(move);
+		int fromBit = 1 << from, toBit = 1 << to;
+		boolean wasKing = (kings & fromBit) != 0;
+		boolean king = wasKing;
+		long[][] numbers = Zobrist.PIECES;
+		if (darkToMove) {
+			dark = (dark & ~fromBit) | toBit;
+			hash ^= Zobrist.hashMask(numbers[Zobrist.LIGHT_MAN], light & captured & ~kings)
+					^ Zobrist.hashMask(numbers[Zobrist.LIGHT_KING], light & captured & kings);
+			light &= ~captured;
+			if (!king && ((toBit & DARK_KING_ROW) != 0 || (move & Move.CROWNED) != 0)) king = true;
+		} else {
+			light = (light & ~fromBit) | toBit;
+			hash ^= Zobrist.hashMask(numbers[Zobrist.DARK_MAN], dark & captured & ~kings)
+					^ Zobrist.hashMask(numbers[Zobrist.DARK_KING], dark & captured & kings);
+			dark &= ~captured;
+			if (!king && ((toBit & LIGHT_KING_ROW) != 0 || (move & Move.CROWNED) != 0)) king = true;
+		}
+		kings &= ~(captured | fromBit);
+		if (king) kings |= toBit;
+		hash ^= numbers[Zobrist.kind(darkToMove, wasKing)][from]
+				^ numbers[Zobrist.kind(darkToMove, king)][to]
+				^ Zobrist.LIGHT_TO_MOVE;
+		darkToMove = !darkToMove;
+	}
+
+	/**
+	 * Play a move in place like apply(), pushing what it takes to take
+	 * the move back on the stack.
+	 * @throws IllegalStateException if the stack is full
+	 */
+	public void make(int move, int captured, UndoStack undo) {
+		int at = undo.size * UndoStack.WIDTH;
+		if (at == undo.records.length) throw new IllegalStateException("undo stack is full");
+		int[] records = undo.records;
+		records[at] = move;
+		records[at + 1] = captured;
+		records[at + 2] = kings;
+		records[at + 3] = (int) hash;
+		records[at + 4] = (int) (hash >>> 32);
+		undo.size++;
+		apply(move, captured);
+	}
+
+	/**
+	 * Take back the last move made with make(), restoring the position
+	 * exactly as it was.
+	 * @throws IllegalStateException if there is no move to take back
+	 */
+	public void unmake(UndoStack undo) {
+		if (undo.size == 0) throw new IllegalStateException("no move to take back");
+		int at = --undo.size * UndoStack.WIDTH;
+		int[] records = undo.records;
+		int move = records[at], captured = records[at + 1];
+		int fromBit = 1 << Move.from(move), toBit = 1 << Move.to(move);
+		darkToMove = !darkToMove;
+		if (darkToMove) {
+			dark = (dark & ~toBit) | fromBit;
+			light |= captured;
+		} else {
+			light = (light & ~toBit) | fromBit;
+			dark |= captured;
+		}
+		kings = records[at + 2];
+		hash = (records[at + 3] & 0xFFFFFFFFL) | (long) records[at + 4] << 32;
+	}
+
+	public int dark() {
+		return dark;
+	}
+
+	public int light() {
+		return light;
+	}
+
+	public int kings() {
+		return kings;
+	}
+
+	public boolean darkToMove() {
+		return darkToMove;
+	}
+
+	/** Zobrist key of this position */
+	public long hash() {
+		return hash;
+	}
+
+	/** Mask of all occupied squares */
+	public int occupied() {
+		return dark | light;
+	}
+
+	/** Mask of all empty playable squares */
+	public int empty() {
+		return ~(dark | light);
+	}
+
+	//square index for a board location, or -1 for a light (unplayable) tile
+	public static int square(int row, int col) {
+		if (row < 0 || row > 7 || col < 0 || col > 7 || ((row + col) & 1) != 0)
+			return -1;
+		return (row << 2) | (col >> 1);
+	}
+
+	public static int row(int square) {
+		return square >> 2;
+	}
+
+	public static int col(int square) {
+		return ((square & 3) << 1) | ((square >> 2) & 1);
+	}
+
+	/**
+	 * Build a position from the GUI's board array.
+	 * @param board 8x8 array of pieces, null for empty squares
+	 * @param darkToMove whose turn it is
+	 */
+	public static Position fromBoard(Piece[][] board, boolean darkToMove) {
+		Position p = new Position();
+		p.darkToMove = darkToMove;
+		for (int row=0; row<8; row++) {
+			for (int col=row%2; col<8; col+=2) {
+				Piece piece = board[row][col];
+				if (piece != null) {
+					int bit = 1 << square(row, col);
+					if (piece.player) p.dark |= bit;
+					else p.light |= bit;
+					if (piece.isKing()) p.kings |= bit;
+				}
+			}
+		}
+		p.hash = Zobrist.hash(p);
+		return p;
+	}
+
+	/**
+	 * Clear the GUI's board array and fill it with new pieces
+	 * matching this position.
+	 * @param board 8x8 array that receives the pieces
+	 */
+	public void toBoard(Piece[][] board) {
+		for (int row=0; row<8; row++) {
+			for (int col=0; col<8; col++) {
+				board[row][col] = null;
+			}
+		}
+		int occupied = dark | light;
+		while (occupied != 0) {
+			int sq = Integer.numberOfTrailingZeros(occupied);
+			occupied &= occupied - 1;
+			int bit = 1 << sq;
+			int row = row(sq), col = col(sq);
+			board[row][col] = new Piece((dark & bit) != 0, board, row, col, false, false, (kings & bit) != 0);
+		}
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof Position)) return false;
+		Position p = (Position) o;
+		return dark == p.dark && light == p.light && kings == p.kings && darkToMove == p.darkToMove;
+	}
+
+	@Override
+	public int hashCode() {
+		return ((dark * 31 + light) * 31 + kings) * 2 + (darkToMove ? 1 : 0);
+	}
+
+	//one row per line, top row first: d/l for men, D/L for kings
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (int row=7; row>=0; row--) {
+			for (int col=0; col<8; col++) {
+				int sq = square(row, col);
+				char c = '.';
+				if (sq >= 0) {
+					int bit = 1 << sq;
+					boolean king = (kings & bit) != 0;
+					if ((dark & bit) != 0) c = king ? 'D' : 'd';
+					else if ((light & bit) != 0) c = king ? 'L' : 'l';
+					else c = '-';
+				}
+				sb.append(c);
+			}
+			sb.append('\n');
+		}
+		sb.append(darkToMove ? "dark" : "light").append(" to move");
+		return sb.toString();
+	}
+}
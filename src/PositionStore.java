@@ -0,0 +1,323 @@
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A file of positions for bulk analysis, with a value (a count, a
+ * score, ...) for each one, such as the positions of a running game
+ * from CheckersGame.getPosition(). Positions are kept as fixed 16-byte records:
+ *
+ *     int dark, int light, int kings, int value << 1 | light to move
+ *
+ * so a record is found by its number alone, and a scan reads the masks
+ * straight out of the file without building Piece or Position objects.
+ * A hash index on the positions, in a second file next to the first
+ * (name.idx), finds a position's record in a probe or two.
+ *
+ * Both files are memory-mapped in segments of 1 GB, so a store can be
+ * far larger than the heap: the operating system pages records in and
+ * out. The last segment is mapped only as far as the file is used,
+ * doubling as it grows, so a small store keeps small files. The index
+ * is rebuilt from the records if it is missing or stale, e.g. after a
+ * crash.
+ *
+ * A store is not safe for use by several threads at once.
+ *
+ * Usage:
+ *     java PositionStore store add archive.pdn...   count every position in the games
+ *     java PositionStore store stats                summary of the store
+ */
+public class PositionStore implements Closeable {
+
+	private static final int MAGIC = 0x434B5053; // "CKPS"
+	private static final int INDEX_MAGIC = 0x434B5049; // "CKPI"
+	private static final int VERSION = 1;
+	private static final int HEADER = 16; // magic, version, count (long)
+	private static final int RECORD = 16;
+	private static final int SLOT = 8;
+	private static final int MIN_CAPACITY = 1 << 12;
+	static final long SEGMENT_SIZE = 1L << 30;
+	// smallest mapping of a segment; mappings double from here
+	static final long MIN_MAPPING = 1L << 16;
+
+	// an index slot: top 24 bits of the position's hash, then record number + 1
+	private static final int TAG_SHIFT = 40;
+	private static final long NUMBER_MASK = (1L << TAG_SHIFT) - 1;
+
+	/** Receives records during a scan */
+	public interface Visitor {
+		void visit(long record, int dark, int light, int kings, boolean darkToMove, int value);
+	}
+
+	/**
+	 * A file mapped in fixed segments, addressed by a long offset. Every
+	 * segment size is a multiple of the record and slot sizes, so no
+	 * value straddles two segments. All but the last segment are mapped
+	 * whole; the last is remapped at twice the size whenever a value
+	 * lies past its end, which grows the file with it.
+	 */
+	private static class MappedFile implements Closeable {
+		private final FileChannel channel;
+		private final List<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+
+		MappedFile(File file) throws IOException {
+			channel = new RandomAccessFile(file, "rw").getChannel();
+		}
+
+		// the segment holding the value at offset, mapped at least up to its end
+		private MappedByteBuffer segment(long offset) throws IOException {
+			int i = (int) (offset / SEGMENT_SIZE);
+			long end = offset % SEGMENT_SIZE + 8;
+			if (i < segments.size() && segments.get(i).capacity() >= end) return segments.get(i);
+			while (segments.size() <= i) {
+				int last = segments.size() - 1;
+				if (last >= 0 && segments.get(last).capacity() < SEGMENT_SIZE) segments.set(last, map(last, SEGMENT_SIZE));
+				// an existing file is mapped as far as it already goes
+				long used = channel.size() - segments.size() * SEGMENT_SIZE, size = MIN_MAPPING;
+				while (size < used && size < SEGMENT_SIZE) size *= 2;
+				segments.add(map(segments.size(), size));
+			}
+			MappedByteBuffer segment = segments.get(i);
+			if (segment.capacity() < end) {
+				long size = segment.capacity();
+				while (size < end) size *= 2;
+				segment = map(i, Math.min(size, SEGMENT_SIZE));
+				segments.set(i, segment);
+			}
+			return segment;
+		}
+
+		private MappedByteBuffer map(int segment, long size) throws IOException {
+			return channel.map(FileChannel.MapMode.READ_WRITE, segment * SEGMENT_SIZE, size);
+		}
+
+		int getInt(long offset) throws IOException {
+			return segment(offset).getInt((int) (offset % SEGMENT_SIZE));
+		}
+
+		void putInt(long offset, int v) throws IOException {
+			segment(offset).putInt((int) (offset % SEGMENT_SIZE), v);
+		}
+
+		long getLong(long offset) throws IOException {
+			return segment(offset).getLong((int) (offset % SEGMENT_SIZE));
+		}
+
+		void putLong(long offset, long v) throws IOException {
+			segment(offset).putLong((int) (offset % SEGMENT_SIZE), v);
+		}
+
+		void force() {
+			for (MappedByteBuffer segment : segments) segment.force();
+		}
+
+		public void close() throws IOException {
+			force();
+			channel.close();
+		}
+	}
+
+	private final File indexFile;
+	private final MappedFile data;
+	private MappedFile index;
+	private long count;
+	private long capacity; // index slots, a power of two
+
+	private PositionStore(File file) throws IOException {
+		indexFile = new File(file.getPath() + ".idx");
+		boolean exists = file.length() >= HEADER;
+		data = new MappedFile(file);
+		if (exists) {
+			if (data.getInt(0) != MAGIC) throw new IOException(file + " is not a position store");
+			if (data.getInt(4) != VERSION) throw new IOException(file + " has unsupported version " + data.getInt(4));
+			count = data.getLong(8);
+		} else {
+			data.putInt(0, MAGIC);
+			data.putInt(4, VERSION);
+			data.putLong(8, 0);
+		}
+		openIndex();
+	}
+
+	/** Open a store, creating it if the file does not exist */
+	public static PositionStore open(File file) throws IOException {
+		return new PositionStore(file);
+	}
+
+	// use the index if it covers every record, otherwise build a new one
+	private void openIndex() throws IOException {
+		if (indexFile.length() >= HEADER) {
+			MappedFile f = new MappedFile(indexFile);
+			if (f.getInt(0) == INDEX_MAGIC && f.getLong(8) == count) {
+				index = f;
+				capacity = 1L << f.getInt(4);
+				return;
+			}
+			f.close();
+		}
+		rebuildIndex(Math.max(MIN_CAPACITY, Long.highestOneBit(Math.max(1, count * 2)) * 2));
+	}
+
+	private void rebuildIndex(long newCapacity) throws IOException {
+		if (index != null) index.close();
+		indexFile.delete();
+		index = new MappedFile(indexFile);
+		capacity = newCapacity;
+		index.putInt(0, INDEX_MAGIC);
+		index.putInt(4, Long.numberOfTrailingZeros(capacity));
+		// the slots of a new file are already zero, meaning empty
+		for (long r=0; r<count; r++) {
+			insert(r, read(r).hash());
+		}
+		index.putLong(8, count);
+	}
+
+	private static long slotOffset(long slot) {
+		return HEADER + slot * SLOT;
+	}
+
+	private static long recordOffset(long record) {
+		return HEADER + record * RECORD;
+	}
+
+	private void insert(long record, long hash) throws IOException {
+		long tag = (hash >>> TAG_SHIFT) << TAG_SHIFT;
+		for (long slot = hash & (capacity - 1); ; slot = (slot + 1) & (capacity - 1)) {
+			long entry = index.getLong(slotOffset(slot));
+			if (entry == 0 || ((entry & ~NUMBER_MASK) == tag && matches((entry & NUMBER_MASK) - 1, record))) {
+				// a later record of the same position replaces the earlier one
+				index.putLong(slotOffset(slot), tag | (record + 1));
+				return;
+			}
+		}
+	}
+
+	private boolean matches(long a, long b) throws IOException {
+		long x = recordOffset(a), y = recordOffset(b);
+		return data.getInt(x) == data.getInt(y) && data.getInt(x + 4) == data.getInt(y + 4)
+				&& data.getInt(x + 8) == data.getInt(y + 8) && ((data.getInt(x + 12) ^ data.getInt(y + 12)) & 1) == 0;
+	}
+
+	/** Number of records */
+	public long size() {
+		return count;
+	}
+
+	/**
+	 * Append a record. Lookups find the latest record of a position.
+	 * @return its record number
+	 */
+	public long append(Position p, int value) throws IOException {
+		long record = count;
+		long offset = recordOffset(record);
+		data.putInt(offset, p.dark());
+		data.putInt(offset + 4, p.light());
+		data.putInt(offset + 8, p.kings());
+		data.putInt(offset + 12, value << 1 | (p.darkToMove() ? 0 : 1));
+		count++;
+		data.putLong(8, count);
+		if (count * 2 > capacity) rebuildIndex(capacity * 2);
+		else insert(record, p.hash());
+		index.putLong(8, count);
+		return record;
+	}
+
+	/**
+	 * Record number of the latest record of a position.
+	 * @return the record number, or -1 if the position is not stored
+	 */
+	public long find(Position p) throws IOException {
+		long tag = (p.hash() >>> TAG_SHIFT) << TAG_SHIFT;
+		int side = p.darkToMove() ? 0 : 1;
+		for (long slot = p.hash() & (capacity - 1); ; slot = (slot + 1) & (capacity - 1)) {
+			long entry = index.getLong(slotOffset(slot));
+			if (entry == 0) return -1;
+			if ((entry & ~NUMBER_MASK) != tag) continue;
+			long record = (entry & NUMBER_MASK) - 1, offset = recordOffset(record);
+			if (data.getInt(offset) == p.dark() && data.getInt(offset + 4) == p.light()
+					&& data.getInt(offset + 8) == p.kings() && (data.getInt(offset + 12) & 1) == side) return record;
+		}
+	}
+
+	/** The position of a record */
+	public Position read(long record) throws IOException {
+		long offset = recordOffset(record);
+		return new Position(data.getInt(offset), data.getInt(offset + 4), data.getInt(offset + 8),
+				(data.getInt(offset + 12) & 1) == 0);
+	}
+
+	/** The value of a record */
+	public int value(long record) throws IOException {
+		return data.getInt(recordOffset(record) + 12) >> 1;
+	}
+
+	/** Change the value of a record in place */
+	public void setValue(long record, int value) throws IOException {
+		long offset = recordOffset(record) + 12;
+		data.putInt(offset, value << 1 | (data.getInt(offset) & 1));
+	}
+
+	/** Visit every record in order */
+	public void scan(Visitor visitor) throws IOException {
+		for (long r=0; r<count; r++) {
+			long offset = recordOffset(r);
+			int meta = data.getInt(offset + 12);
+			visitor.visit(r, data.getInt(offset), data.getInt(offset + 4), data.getInt(offset + 8), (meta & 1) == 0, meta >> 1);
+		}
+	}
+
+	/** Write all changes out to the disk */
+	public void force() {
+		data.force();
+		index.force();
+	}
+
+	public void close() throws IOException {
+		data.close();
+		index.close();
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2 || !(args[1].equals("add") || args[1].equals("stats"))) {
+			System.out.println("usage: java PositionStore store add archive.pdn...");
+			System.out.println("       java PositionStore store stats");
+			System.exit(1);
+		}
+		try (PositionStore store = open(new File(args[0]))) {
+			if (args[1].equals("add")) {
+				PdnGame game = new PdnGame();
+				Position p = new Position();
+				int[] moves = new int[Variant.BUFFER_SIZE];
+				for (int i=2; i<args.length; i++) {
+					try (PdnReader in = new PdnReader(new FileInputStream(args[i]))) {
+						while (in.next(game)) {
+							if (game.error() != null) continue;
+							p.copyFrom(game.start());
+							for (int m=0; ; m++) {
+								long r = store.find(p);
+								if (r < 0) store.append(p, 1);
+								else store.setValue(r, store.value(r) + 1);
+								if (m == game.size()) break;
+								int at = game.find(m, p, moves);
+								if (at < 0) break;
+								p.apply(moves[at], moves[at + 1]);
+							}
+						}
+					}
+				}
+			}
+			long[] byPieces = new long[25];
+			long[] total = new long[1];
+			store.scan((record, dark, light, kings, darkToMove, value) -> {
+				byPieces[Integer.bitCount(dark | light)]++;
+				total[0] += value;
+			});
+			System.out.println(store.size() + " positions, total value " + total[0]);
+			for (int n=24; n>0; n--) {
+				if (byPieces[n] > 0) System.out.println(n + " pieces: " + byPieces[n]);
+			}
+		}
+	}
+}
@@ -0,0 +1,302 @@
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * This class picks moves for a computer player. It runs an
+ * iterative-deepening alpha-beta (negamax) search over Positions:
+ * depth 1, then 2, and so on until the time budget for the move
+ * runs out, always answering with the best move of the deepest
+ * finished iteration.
+ *
+ * Results are cached in a TranspositionTable keyed by each Position's
+ * Zobrist hash, so a position reached again through another move order
+ * is not searched twice.
+ *
+ * With a Tablebase set, positions it covers are scored from the
+ * databases instead of searched.
+ *
+ * Leaves are scored by an Evaluator. The placement part of its score
+ * is carried down the tree, one value per ply: making a move adds the
+ * move's delta to it, and taking the move back just returns to the
+ * ply above, so no leaf scans the board for it.
+ *
+ * Move ordering: the previous iteration's best move is tried first at
+ * the root, and elsewhere the table's best move comes first, followed
+ * by moves sorted by a history table that rewards from/to pairs that
+ * caused cutoffs. When the nominal depth
+ * runs out while a capture is pending, the search keeps going until
+ * the position is quiet, so exchanges are never cut in half.
+ *
+ * A Search reuses its position stack and move buffers, so searching
+ * allocates nothing per node. It is not thread-safe; use one per
+ * thread. Several Searches may share one table, which is how
+ * ParallelSearch runs them side by side.
+ */
+public class Search {
+
+	/** Score of a won position, minus the plies needed to win */
+	public static final int WIN = 100000;
+	private static final int INFINITY = WIN + 1;
+	/** Deepest line the search will follow, captures included */
+	public static final int MAX_PLY = 64;
+	/** Score of a won endgame database position, minus the plies to the win */
+	private static final int KNOWN_WIN = WIN / 2;
+	// database wins reach down from KNOWN_WIN by at most the ply plus the distance
+	private static final int KNOWN_RANGE = MAX_PLY + Tablebase.MAX_PLIES + 1;
+	/** Transposition table size used by the no-argument constructor */
+	public static final int DEFAULT_TABLE_MB = 16;
+
+	// the position searched, made and unmade in place, and per-ply state reused at every node
+	private final Position position = new Position();
+	private final UndoStack undo = new UndoStack(MAX_PLY + 1);
+	private final int[][] moves = new int[MAX_PLY + 1][MoveGenerator.BUFFER_SIZE];
+	private final int[][] scores = new int[MAX_PLY + 1][MoveGenerator.MAX_MOVES];
+	// Evaluator placement score of the position at each ply
+	private final int[] placement = new int[MAX_PLY + 1];
+	// cutoff counts by from*32+to, for ordering quiet moves
+	private final int[] history = new int[Position.SQUARES * Position.SQUARES];
+	private final TranspositionTable table;
+	private Evaluator evaluator = Evaluator.DEFAULT;
+	// endgame databases, null when none are loaded
+	private Tablebase tablebase;
+
+	private long nodes;
+	private long deadline;
+	private boolean stopped;
+	// set from another thread to end the current search early
+	private volatile boolean abort;
+	// 0 for a lone or main search; helpers of a parallel search skip depths
+	private int helperId;
+	// stop flag of a parallel search, shared by all its threads (null when alone)
+	private AtomicBoolean sharedStop;
+
+	/** Outcome of a search: the chosen move and how it was found */
+	public static class Result {
+		public final int move;
+		public final int captured;
+		public final int score;
+		public final int depth;
+		public final long nodes;
+		public final long nanos;
+
+		Result(int move, int captured, int score, int depth, long nodes, long nanos) {
+			this.move = move;
+			this.captured = captured;
+			this.score = score;
+			this.depth = depth;
+			this.nodes = nodes;
+			this.nanos = nanos;
+		}
+
+		/** False when the side to move had no legal move */
+		public boolean hasMove() {
+			return move >= 0;
+		}
+
+		public long nodesPerSecond() {
+			return nanos == 0 ? 0 : nodes * 1000000000L / nanos;
+		}
+
+		public String toString() {
+			return (hasMove() ? Move.toString(move, captured) : "no move") + " score " + score + " depth " + depth
+					+ ", " + nodes + " nodes in " + nanos / 1000000 + " ms (" + nodesPerSecond() + " nodes/s)";
+		}
+	}
+
+	public Search() {
+		this(new TranspositionTable(DEFAULT_TABLE_MB));
+	}
+
+	/**
+	 * Construct a search that caches results in the given table.
+	 * @param table
+	 */
+	public Search(TranspositionTable table) {
+		this.table = table;
+	}
+
+	/**
+	 * Find a move for the side to move.
+	 * @param root position to search
+	 * @param millis time budget; the search stops soon after it runs out
+	 * @param maxDepth deepest iteration to start
+	 */
+	public Result search(Position root, long millis, int maxDepth) {
+		long start = System.nanoTime();
+		deadline = start + millis * 1000000L;
+		stopped = false;
+		abort = false;
+		nodes = 0;
+		for (int i=0; i<history.length; i++) {
+			history[i] >>= 2; // age the counts from the previous search
+		}
+
+		int[] rootMoves = moves[0];
+		position.copyFrom(root);
+		undo.clear();
+		placement[0] = evaluator.placement(position);
+		int n = MoveGenerator.generate(position, rootMoves);
+		if (n == 0) return new Result(-1, 0, -WIN, 0, 0, System.nanoTime() - start);
+		int best = 0, bestScore = 0, depth = 0;
+		// a forced move needs no search
+		if (n == 1) return new Result(rootMoves[0], rootMoves[1], 0, 1, 0, System.nanoTime() - start);
+
+		// odd helpers start one ply deeper so threads spread over two depths
+		for (int d=1 + (helperId & 1); d<=maxDepth && d<MAX_PLY; d++) {
+			int iterationBest = -1, alpha = -INFINITY;
+			for (int i=0; i<n; i++) {
+				// the previous best move goes first
+				int m = i == 0 ? best : (i == best ? 0 : i);
+				make(0, rootMoves[m * Move.WIDTH], rootMoves[m * Move.WIDTH + 1]);
+				int score = -alphaBeta(position, d - 1, 1, -INFINITY, -alpha);
+				position.unmake(undo);
+				if (stopped) break;
+				if (score > alpha) {
+					alpha = score;
+					iterationBest = m;
+				}
+			}
+			// an unfinished iteration still counts if its first move was beaten
+			if (iterationBest >= 0) {
+				best = iterationBest;
+				bestScore = alpha;
+				depth = d;
+			}
+			if (stopped || Math.abs(bestScore) >= WIN - MAX_PLY) break;
+		}
+		return new Result(rootMoves[best * Move.WIDTH], rootMoves[best * Move.WIDTH + 1],
+				bestScore, depth, nodes, System.nanoTime() - start);
+	}
+
+	/** Find a move within the time budget, with no depth limit */
+	public Result search(Position root, long millis) {
+		return search(root, millis, MAX_PLY);
+	}
+
+	// negamax alpha-beta; scores are from the point of view of the side to move
+	private int alphaBeta(Position p, int depth, int ply, int alpha, int beta) {
+		if ((++nodes & 1023) == 0 && (abort || sharedStop != null && sharedStop.get() || System.nanoTime() > deadline))
+			stopped = true;
+		if (stopped) return 0;
+
+		// positions in the endgame databases are answered exactly
+		if (tablebase != null) {
+			int value = tablebase.probe(p);
+			if (value != Tablebase.UNKNOWN) {
+				if (value == 0) return 0;
+				int score = KNOWN_WIN - ply - Tablebase.plies(value);
+				return value > 0 ? score : -score;
+			}
+		}
+
+		int hashMove = -1;
+		long entry = table.probe(p.hash);
+		if (entry != 0) {
+			hashMove = TranspositionTable.move(entry);
+			if (TranspositionTable.depth(entry) >= Math.max(depth, 0)) {
+				int score = fromTable(TranspositionTable.score(entry), ply);
+				int bound = TranspositionTable.bound(entry);
+				if (bound == TranspositionTable.EXACT
+						|| (bound == TranspositionTable.LOWER && score >= beta)
+						|| (bound == TranspositionTable.UPPER && score <= alpha))
+					return score;
+			}
+		}
+
+		int[] buf = moves[ply];
+		int n = MoveGenerator.generate(p, buf);
+		if (n == 0) return -WIN + ply; // no moves left: lost
+		// stop at the horizon unless a capture is pending
+		if (ply >= MAX_PLY || (depth <= 0 && buf[1] == 0)) return evaluator.evaluate(p, placement[ply]);
+
+		int[] order = scores[ply];
+		for (int i=0; i<n; i++) {
+			int move = buf[i * Move.WIDTH];
+			order[i] = move == hashMove ? Integer.MAX_VALUE : history[move & 1023];
+		}
+		int alphaOrig = alpha, bestMove = buf[0];
+		for (int i=0; i<n; i++) {
+			int m = pickNext(buf, order, i, n);
+			make(ply, buf[m], buf[m + 1]);
+			int score = -alphaBeta(p, depth - 1, ply + 1, -beta, -alpha);
+			p.unmake(undo);
+			if (stopped) return 0;
+			if (score > alpha) {
+				alpha = score;
+				bestMove = buf[m];
+				if (alpha >= beta) {
+					if (buf[m + 1] == 0) history[buf[m] & 1023] += depth * depth;
+					break;
+				}
+			}
+		}
+		int bound = alpha <= alphaOrig ? TranspositionTable.UPPER
+				: alpha >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+		table.store(p.hash, bestMove, bound, Math.max(depth, 0), toTable(alpha, ply));
+		return alpha;
+	}
+
+	// make a move in the position at ply, carrying its placement score to the ply below
+	private void make(int ply, int move, int captured) {
+		placement[ply + 1] = placement[ply] + evaluator.delta(position, move, captured);
+		position.make(move, captured, undo);
+	}
+
+	// win scores, database wins included, count plies from the root; the table
+	// stores them from the node instead, so they hold wherever the node comes up again
+	private static int toTable(int score, int ply) {
+		if (!distance(score)) return score;
+		return score > 0 ? score + ply : score - ply;
+	}
+
+	private static int fromTable(int score, int ply) {
+		if (!distance(score)) return score;
+		return score > 0 ? score - ply : score + ply;
+	}
+
+	// whether a score is a win or loss at a distance, on the board or from the databases
+	private static boolean distance(int score) {
+		int a = Math.abs(score);
+		return a >= WIN - MAX_PLY || (a >= KNOWN_WIN - KNOWN_RANGE && a <= KNOWN_WIN);
+	}
+
+	// selection sort step: swap the best remaining move into slot i, return its offset
+	private static int pickNext(int[] buf, int[] order, int i, int n) {
+		int best = i;
+		for (int j=i+1; j<n; j++) {
+			if (order[j] > order[best]) best = j;
+		}
+		if (best != i) {
+			int t = order[i]; order[i] = order[best]; order[best] = t;
+			int a = i * Move.WIDTH, b = best * Move.WIDTH;
+			t = buf[a]; buf[a] = buf[b]; buf[b] = t;
+			t = buf[a + 1]; buf[a + 1] = buf[b + 1]; buf[b + 1] = t;
+		}
+		return i * Move.WIDTH;
+	}
+
+	/** Score leaves with the given weights instead of the default ones */
+	public void setEvaluator(Evaluator evaluator) {
+		this.evaluator = evaluator;
+	}
+
+	/** Use endgame databases for positions with few pieces, or null for none */
+	public void setTablebase(Tablebase tablebase) {
+		this.tablebase = tablebase;
+	}
+
+	/** Ask a running search to return as soon as possible, from any thread */
+	public void stop() {
+		abort = true;
+	}
+
+	// mark this search as thread number id (0 for the main one) of a parallel search
+	void setHelper(int id, AtomicBoolean stop) {
+		helperId = id;
+		sharedStop = stop;
+	}
+
+	/** Nodes visited by the last search */
+	public long nodes() {
+		return nodes;
+	}
+}
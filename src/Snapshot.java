@@ -0,0 +1,112 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The complete state of a game in a fixed 28-byte binary record, used
+ * for saved games. Layout (big-endian):
+ *
+ *     0  int    magic "CKSV"
+ *     4  byte   version
+ *     5  byte   flags: bit 0 dark to move, bit 1 multi-jump in progress
+ *     6  byte   square the moving piece started its turn on
+ *     7  byte   square the moving piece stands on now
+ *     8  int    dark pieces  \
+ *    12  int    light pieces  } position at the start of the turn
+ *    16  int    kings        /
+ *    20  int    squares captured so far this turn
+ *    24  short  plies since the last capture or man move
+ *    26  short  reserved
+ *
+ * The position is the one at the start of the current turn; while a
+ * multi-jump is in progress, the jumps made so far are given by the
+ * two squares and the captured mask, so a loaded game can continue
+ * the jump where it stopped. Squares are Position indices (0-31).
+ */
+public class Snapshot {
+
+	/** Size of an encoded snapshot in bytes */
+	public static final int SIZE = 28;
+
+	private static final int MAGIC = 0x434B5356; // "CKSV"
+	private static final int VERSION = 1;
+
+	public final Position position;
+	public final boolean jumping;
+	public final int jumpFrom;
+	public final int jumpAt;
+	public final int captured;
+	public final int quietPlies;
+
+	/**
+	 * @param position position at the start of the turn
+	 * @param jumping true if a multi-jump is in progress
+	 * @param jumpFrom square the jumping piece started on
+	 * @param jumpAt square the jumping piece stands on now
+	 * @param captured squares captured so far this turn
+	 * @param quietPlies plies since the last capture or man move
+	 */
+	public Snapshot(Position position, boolean jumping, int jumpFrom, int jumpAt, int captured, int quietPlies) {
+		this.position = position;
+		this.jumping = jumping;
+		this.jumpFrom = jumpFrom;
+		this.jumpAt = jumpAt;
+		this.captured = captured;
+		this.quietPlies = quietPlies;
+	}
+
+	/** Append the encoded snapshot to buf */
+	public void write(ByteBuffer buf) {
+		buf.putInt(MAGIC);
+		buf.put((byte) VERSION);
+		buf.put((byte) ((position.darkToMove ? 1 : 0) | (jumping ? 2 : 0)));
+		buf.put((byte) jumpFrom);
+		buf.put((byte) jumpAt);
+		buf.putInt(position.dark).putInt(position.light).putInt(position.kings);
+		buf.putInt(captured);
+		buf.putShort((short) Math.min(quietPlies, Short.MAX_VALUE));
+		buf.putShort((short) 0);
+	}
+
+	/**
+	 * Decode a snapshot from buf.
+	 * @throws IOException if the bytes are not a snapshot this version understands
+	 */
+	public static Snapshot read(ByteBuffer buf) throws IOException {
+		if (buf.remaining() < SIZE) throw new IOException("snapshot truncated: " + buf.remaining() + " bytes");
+		if (buf.getInt() != MAGIC) throw new IOException("not a saved game");
+		int version = buf.get();
+		if (version != VERSION) throw new IOException("unsupported saved game version " + version);
+		int flags = buf.get();
+		int jumpFrom = buf.get(), jumpAt = buf.get();
+		int dark = buf.getInt(), light = buf.getInt(), kings = buf.getInt();
+		int captured = buf.getInt();
+		int quietPlies = buf.getShort();
+		buf.getShort();
+		if ((dark & light) != 0 || jumpFrom < 0 || jumpFrom > 31 || jumpAt < 0 || jumpAt > 31)
+			throw new IOException("corrupt saved game");
+		Position p = new Position(dark, light, kings & (dark | light), (flags & 1) != 0);
+		return new Snapshot(p, (flags & 2) != 0, jumpFrom, jumpAt, captured, quietPlies);
+	}
+
+	/** Write the snapshot to a file, replacing its contents */
+	public void save(File file) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(SIZE);
+		write(buf);
+		buf.flip();
+		try (FileChannel out = new RandomAccessFile(file, "rw").getChannel()) {
+			out.truncate(0);
+			while (buf.hasRemaining()) out.write(buf);
+		}
+	}
+
+	/** Read a snapshot from a file */
+	public static Snapshot load(File file) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(SIZE);
+		try (FileChannel in = new RandomAccessFile(file, "r").getChannel()) {
+			while (buf.hasRemaining() && in.read(buf) >= 0) { }
+		}
+		buf.flip();
+		return read(buf);
+	}
+}
@@ -22,12 +22,15 @@
  *
  ******************************************************************************/
 
+import java.awt.AlphaComposite;
 import java.awt.BasicStroke;
 import java.awt.Color;
+import java.awt.Composite;
 import java.awt.FileDialog;
 import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
 import java.awt.Image;
 import java.awt.RenderingHints;
 import java.awt.Toolkit;
@@ -55,9 +58,12 @@ import java.io.IOException;
 
 import java.net.URL;
 
-import java.util.LinkedList;
-import java.util.TreeSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
 
 import javax.imageio.ImageIO;
 
@@ -400,6 +406,16 @@ import javax.swing.KeyStroke;
  *  not yet processed) and removes it from the list of saved keystrokes.
  *  The third method tells you whether a key is currently being pressed.
  *  <p>
+ *  Instead of polling in a loop, a program can block until input arrives:
+ *  <ul>
+ *  <li> {@link #waitForInput()}
+ *  <li> {@link #waitForMouseClicked()}
+ *  </ul>
+ *  <p>
+ *  The first method sleeps until there is a mouse click or a typed key that
+ *  has not been processed; the second until there is a mouse click, and returns it.
+ *  The thread uses no CPU while it waits, and wakes up as soon as the event arrives.
+ *  <p>
  *  <b>Accessing control parameters.</b>
  *  You can use the following methods to access the current pen color, pen radius,
  *  and font:
@@ -579,9 +595,11 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
 	private static final double DEFAULT_YMAX = 1.0;
 	private static double xmin, ymin, xmax, ymax;
 
-	// for synchronization
-	private static Object mouseLock = new Object();
-	private static Object keyLock = new Object();
+	// for synchronization of the scale
+	private static Object scaleLock = new Object();
+
+	// the one thread waiting in waitForInput() or waitForMouseClicked(), if any
+	private static volatile Thread inputWaiter;
 
 	// default font
 	private static final Font DEFAULT_FONT = new Font("SansSerif", Font.PLAIN, 16);
@@ -600,9 +618,9 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
 	private static JFrame frame;
 
 	// mouse state
-	private static boolean mousePressed = false;
-	private static double mouseX = 0;
-	private static double mouseY = 0;
+	private static volatile boolean mousePressed = false;
+	private static volatile double mouseX = 0;
+	private static volatile double mouseY = 0;
 
 	public static class MouseClick {
 		private double x, y;
@@ -612,13 +630,65 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
 		public double getX() {return x;}
 		public double getY() {return y;}
 	}
-	private static LinkedList<MouseClick> mouseClicked = new LinkedList<MouseClick>();
+
+	/**
+	 * A bounded queue of input events between exactly one producer (the
+	 * event dispatch thread) and one consumer (the program's thread).
+	 * Neither side locks: each owns one index into the ring, and
+	 * publishes it once its slot is filled or emptied, so the other side
+	 * sees the slot's contents first. The consumer frees slots with an
+	 * ordered write; the producer publishes events with a volatile one,
+	 * which also orders it before the read of inputWaiter that follows,
+	 * so a consumer that found the ring empty is always seen waiting. An
+	 * event holds two numbers: a click's coordinates, or a typed key.
+	 */
+	private static final class EventRing {
+		private final double[] a, b;
+		private final int mask;
+		private final AtomicLong head = new AtomicLong(); // next slot to take, owned by the consumer
+		private final AtomicLong tail = new AtomicLong(); // next slot to fill, owned by the producer
+
+		EventRing(int capacity) { // a power of two
+			a = new double[capacity];
+			b = new double[capacity];
+			mask = capacity - 1;
+		}
+
+		// producer: false, dropping the event, if the ring is full
+		boolean offer(double x, double y) {
+			long t = tail.get();
+			if (t - head.get() > mask) return false;
+			a[(int) t & mask] = x;
+			b[(int) t & mask] = y;
+			// a full store, not lazySet(): see inputArrived()
+			tail.set(t + 1);
+			return true;
+		}
+
+		boolean isEmpty() {
+			return head.get() == tail.get();
+		}
+
+		// consumer: the oldest event; peekA/peekB before remove()
+		double peekA() { return a[(int) head.get() & mask]; }
+		double peekB() { return b[(int) head.get() & mask]; }
+
+		void remove() {
+			head.lazySet(head.get() + 1);
+		}
+	}
+
+	private static final int EVENT_CAPACITY = 1024;
+
+	// queue of mouse clicks
+	private static final EventRing mouseClicked = new EventRing(EVENT_CAPACITY);
 
 	// queue of typed key characters
-	private static LinkedList<Character> keysTyped = new LinkedList<Character>();
+	private static final EventRing keysTyped = new EventRing(EVENT_CAPACITY);
 
-	// set of key codes currently pressed down
-	private static TreeSet<Integer> keysDown = new TreeSet<Integer>();
+	// key codes currently pressed down, one bit each; written only by the event dispatch thread
+	private static final int KEY_CODES = 1 << 16;
+	private static final AtomicLongArray keysDown = new AtomicLongArray(KEY_CODES / 64);
 
 	// time in milliseconds (from currentTimeMillis()) when we can draw again
 	// used to control the frame rate
@@ -667,7 +737,6 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
 	// init
 	private static void init() {
 		if (frame != null) frame.setVisible(false);
-		frame = new JFrame();
 		offscreenImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
 		onscreenImage  = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
 		offscreen = offscreenImage.createGraphics();
@@ -688,7 +757,11 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
 		hints.put(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
 		offscreen.addRenderingHints(hints);
 
+		// without a display, drawing only goes to the offscreen buffers
+		if (GraphicsEnvironment.isHeadless()) return;
+
 		// frame stuff
+		frame = new JFrame();
 		ImageIcon icon = new ImageIcon(onscreenImage);
 		JLabel draw = new JLabel(icon);
 
@@ -759,7 +832,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
 	public static void setXscale(double min, double max) {
 		double size = max - min;
 		if (size == 0.0) throw new IllegalArgumentException("the min and max are the same");
-		synchronized (mouseLock) {
+		synchronized (scaleLock) {
 			xmin = min - BORDER * size;
 			xmax = max + BORDER * size;
 		}
@@ -775,7 +848,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
 	public static void setYscale(double min, double max) {
 		double size = max - min;
 		if (size == 0.0) throw new IllegalArgumentException("the min and max are the same");
-		synchronized (mouseLock) {
+		synchronized (scaleLock) {
 			ymin = min - BORDER * size;
 			ymax = max + BORDER * size;
 		}
@@ -791,7 +864,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
 	public static void setScale(double min, double max) {
 		double size = max - min;
 		if (size == 0.0) throw new IllegalArgumentException("the min and max are the same");
-		synchronized (mouseLock) {
+		synchronized (scaleLock) {
 			xmin = min - BORDER * size;
 			xmax = max + BORDER * size;
 			ymin = min - BORDER * size;
@@ -1245,9 +1318,63 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
 	 *  Drawing images.
 	 ***************************************************************************/
 
-	// [Summer 2016] updated to use ImageIO instead of ImageIcon()
+	// decoded images, and copies of them scaled to a size in pixels, keyed by
+	// "name" and "name@widthxheight"; the least recently drawn one is dropped
+	// once there are more than IMAGE_CACHE_SIZE
+	private static final int IMAGE_CACHE_SIZE = 64;
+	private static final Map<String, BufferedImage> images =
+			new LinkedHashMap<String, BufferedImage>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, BufferedImage> eldest) {
+					return size() > IMAGE_CACHE_SIZE;
+				}
+			};
+
+	/**
+	 * Loads an image into the cache ahead of time, so that drawing it the
+	 * first time costs no more than drawing it again.
+	 *
+	 * @param  filename the name of the image/picture, e.g., "ball.gif"
+	 * @throws IllegalArgumentException if the image filename is invalid
+	 */
+	public static void preloadImage(String filename) {
+		getImage(filename);
+	}
+
 	private static BufferedImage getImage(String filename) {
 		if (filename == null) throw new NullPointerException();
+		synchronized (images) {
+			BufferedImage image = images.get(filename);
+			if (image == null) {
+				image = readImage(filename);
+				images.put(filename, image);
+			}
+			return image;
+		}
+	}
+
+	// the image scaled once, with interpolation, to the given size in pixels
+	private static BufferedImage getImage(String filename, int width, int height) {
+		BufferedImage image = getImage(filename);
+		if (image.getWidth() == width && image.getHeight() == height) return image;
+		String key = filename + "@" + width + "x" + height;
+		synchronized (images) {
+			BufferedImage scaled = images.get(key);
+			if (scaled == null) {
+				scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+				Graphics2D g = scaled.createGraphics();
+				g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+				g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+				g.drawImage(image, 0, 0, width, height, null);
+				g.dispose();
+				images.put(key, scaled);
+			}
+			return scaled;
+		}
+	}
+
+	// [Summer 2016] updated to use ImageIO instead of ImageIcon()
+	private static BufferedImage readImage(String filename) {
 
 		// from a file or URL
 		try {
@@ -1287,7 +1414,9 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
 	 * As an optimization, the picture is cached, so there is no performance
 	 * penalty for redrawing the same image multiple times (e.g., in an animation).
 	 * However, if you change the picture file after drawing it, subsequent
-	 * calls will draw the original picture.
+	 * calls will draw the original picture. The cache holds a bounded number
+	 * of pictures, dropping the least recently drawn, and rescaled pictures
+	 * are cached at each size they are drawn at.
 	 *
 	 * @param  x the center <em>x</em>-coordinate of the image
 	 * @param  y the center <em>y</em>-coordinate of the image
@@ -1347,7 +1476,6 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
 	 * @throws IllegalArgumentException if the image filename is invalid
 	 */
 	public static void picture(double x, double y, String filename, double scaledWidth, double scaledHeight) {
-		Image image = getImage(filename);
 		if (scaledWidth < 0) throw new IllegalArgumentException("width is negative: " + scaledWidth);
 		if (scaledHeight < 0) throw new IllegalArgumentException("height is negative: " + scaledHeight);
 		double xs = scaleX(x);
@@ -1357,10 +1485,10 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
 		if (ws < 0 || hs < 0) throw new IllegalArgumentException("image " + filename + " is corrupt");
 		if (ws <= 1 && hs <= 1) pixel(x, y);
 		else {
+			// drawn from a copy scaled ahead of time, not rescaled on every draw
+			Image image = getImage(filename, (int) Math.round(ws), (int) Math.round(hs));
 			offscreen.drawImage(image, (int) Math.round(xs - ws/2.0),
-					(int) Math.round(ys - hs/2.0),
-					(int) Math.round(ws),
-					(int) Math.round(hs), null);
+					(int) Math.round(ys - hs/2.0), null);
 		}
 		draw();
 	}
@@ -1402,6 +1530,66 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
 		draw();
 	}
 
+	/***************************************************************************
+	 *  Layers: copies of the canvas drawn back, whole or in part.
+	 ***************************************************************************/
+
+	/**
+	 * Returns a copy of everything drawn so far, to be drawn back with
+	 * {@link #drawLayer}. A drawing that rarely changes, such as a board,
+	 * can be drawn once and then copied back instead of drawn again.
+	 * The copy is only valid for the canvas size it was taken at.
+	 *
+	 * @return a copy of the offscreen canvas
+	 */
+	public static BufferedImage copyLayer() {
+		BufferedImage layer = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = layer.createGraphics();
+		g.drawImage(offscreenImage, 0, 0, null);
+		g.dispose();
+		return layer;
+	}
+
+	/**
+	 * Draws a layer from {@link #copyLayer} over the whole canvas.
+	 *
+	 * @param  layer the layer
+	 */
+	public static void drawLayer(BufferedImage layer) {
+		if (layer == null) throw new NullPointerException();
+		drawLayer(layer, 0, 0, width, height);
+		draw();
+	}
+
+	/**
+	 * Draws the part of a layer from {@link #copyLayer} inside the axis-aligned
+	 * rectangle centered at (<em>x</em>, <em>y</em>), replacing whatever is
+	 * drawn there. The rectangle is widened to whole pixels.
+	 *
+	 * @param  layer the layer
+	 * @param  x the <em>x</em>-coordinate of the center of the rectangle
+	 * @param  y the <em>y</em>-coordinate of the center of the rectangle
+	 * @param  halfWidth one half the width of the rectangle
+	 * @param  halfHeight one half the height of the rectangle
+	 */
+	public static void drawLayer(BufferedImage layer, double x, double y, double halfWidth, double halfHeight) {
+		if (layer == null) throw new NullPointerException();
+		int x0 = Math.max(0, (int) Math.floor(scaleX(x - halfWidth)));
+		int x1 = Math.min(width, (int) Math.ceil(scaleX(x + halfWidth)));
+		int y0 = Math.max(0, (int) Math.floor(scaleY(y + halfHeight)));
+		int y1 = Math.min(height, (int) Math.ceil(scaleY(y - halfHeight)));
+		if (x0 < x1 && y0 < y1) drawLayer(layer, x0, y0, x1, y1);
+		draw();
+	}
+
+	// copy the pixels as they are, without blending them over what is there
+	private static void drawLayer(BufferedImage layer, int x0, int y0, int x1, int y1) {
+		Composite composite = offscreen.getComposite();
+		offscreen.setComposite(AlphaComposite.Src);
+		offscreen.drawImage(layer, x0, y0, x1, y1, x0, y0, x1, y1, null);
+		offscreen.setComposite(composite);
+	}
+
 	/***************************************************************************
 	 *  Drawing text.
 	 ***************************************************************************/
@@ -1535,7 +1723,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
 	 */
 	public static void show() {
 		onscreen.drawImage(offscreenImage, 0, 0, null);
-		frame.repaint();
+		if (frame != null) frame.repaint();
 	}
 
 	// draw onscreen if defer is false
@@ -1640,9 +1828,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
 	 * @return {@code true} if the mouse is being pressed; {@code false} otherwise
 	 */
 	public static boolean mousePressed() {
-		synchronized (mouseLock) {
-			return mousePressed;
-		}
+		return mousePressed;
 	}
 
 	/**
@@ -1651,9 +1837,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
 	 * @return the <em>x</em>-coordinate of the mouse
 	 */
 	public static double mouseX() {
-		synchronized (mouseLock) {
-			return mouseX;
-		}
+		return mouseX;
 	}
 
 	/**
@@ -1662,9 +1846,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
 	 * @return <em>y</em>-coordinate of the mouse
 	 */
 	public static double mouseY() {
-		synchronized (mouseLock) {
-			return mouseY;
-		}
+		return mouseY;
 	}
 
 	/**
@@ -1675,9 +1857,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
 	 * been processed by {@link #nextMouseClicked()}; {@code false} otherwise
 	 */
 	public static boolean hasNextMouseClicked() {
-		synchronized (mouseLock) {
-			return !mouseClicked.isEmpty();
-		}
+		return !mouseClicked.isEmpty();
 	}
 
 	/**
@@ -1692,12 +1872,92 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
 	 * @throws NoSuchElementException if there is no remaining mouse click
 	 */
 	public static MouseClick nextMouseClicked() {
-		synchronized (mouseLock) {
-			if (mouseClicked.isEmpty()) {
-				throw new NoSuchElementException("your program has already processed all mouse clicked");
-			}
-			return mouseClicked.removeLast();
+		if (mouseClicked.isEmpty()) {
+			throw new NoSuchElementException("your program has already processed all mouse clicked");
+		}
+		MouseClick click = new MouseClick(mouseClicked.peekA(), mouseClicked.peekB());
+		mouseClicked.remove();
+		return click;
+	}
+
+	/**
+	 * Waits until the user has clicked the mouse or typed a key that has
+	 * not yet been processed, without polling. Returns at once if there
+	 * is such an event already.
+	 */
+	public static void waitForInput() {
+		await(true);
+	}
+
+	/**
+	 * Waits until the user clicks the mouse (unless there is a click that
+	 * has not yet been processed) and returns the click, like
+	 * {@link #nextMouseClicked()}.
+	 *
+	 * @return the next mouse click
+	 */
+	public static MouseClick waitForMouseClicked() {
+		await(false);
+		return nextMouseClicked();
+	}
+
+	// park until there is a click, or a typed key too if keys is true;
+	// the waiter is published before the queues are checked, so an event
+	// added after the check always finds it to unpark. An interrupt does
+	// not end the wait, but is passed on to the caller
+	private static void await(boolean keys) {
+		boolean interrupted = false;
+		inputWaiter = Thread.currentThread();
+		while (!hasNextMouseClicked() && !(keys && hasNextKeyTyped())) {
+			LockSupport.park(StdDraw.class);
+			// park() returns at once while the flag is set, so clear it until the wait is over
+			if (Thread.interrupted()) interrupted = true;
 		}
+		inputWaiter = null;
+		if (interrupted) Thread.currentThread().interrupt();
+	}
+
+	// wake up the thread waiting for input; called after the event is
+	// published with a volatile write, so either this sees the waiter or
+	// the waiter's check of the queue sees the event
+	private static void inputArrived() {
+		Thread waiter = inputWaiter;
+		if (waiter != null) LockSupport.unpark(waiter);
+	}
+
+	/**
+	 * Adds a mouse click to the queue, as if the user had clicked at (x, y)
+	 * in user coordinates. Used by the mouse listener, and by tests that
+	 * replay recorded input; like the listener, it must only be called
+	 * from one thread at a time.
+	 *
+	 * @return false if the queue is full and the click was dropped
+	 */
+	static boolean enqueueMouseClick(double x, double y) {
+		boolean added = mouseClicked.offer(x, y);
+		inputArrived();
+		return added;
+	}
+
+	/**
+	 * Adds a typed key to the queue; see {@link #enqueueMouseClick}.
+	 *
+	 * @return false if the queue is full and the key was dropped
+	 */
+	static boolean enqueueKeyTyped(char c) {
+		boolean added = keysTyped.offer(c, 0);
+		inputArrived();
+		return added;
+	}
+
+	/**
+	 * Records a key as pressed or released; see {@link #enqueueMouseClick}.
+	 */
+	static void setKeyDown(int keycode, boolean down) {
+		if (keycode < 0 || keycode >= KEY_CODES) return;
+		long bit = 1L << (keycode & 63);
+		long word = keysDown.get(keycode >>> 6);
+		keysDown.set(keycode >>> 6, down ? word | bit : word & ~bit);
 	}
 
 	/**
@@ -1705,9 +1965,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
 	 */
 	@Override
 	public void mouseClicked(MouseEvent e) {
-		synchronized (mouseLock) {
-			mouseClicked.add(new MouseClick(mouseX, mouseY));
-		}
+		enqueueMouseClick(mouseX, mouseY);
 	}
 
 	/**
@@ -1727,11 +1985,9 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
 	 */
 	@Override
 	public void mousePressed(MouseEvent e) {
-		synchronized (mouseLock) {
-			mouseX = StdDraw.userX(e.getX());
-			mouseY = StdDraw.userY(e.getY());
-			mousePressed = true;
-		}
+		mouseX = StdDraw.userX(e.getX());
+		mouseY = StdDraw.userY(e.getY());
+		mousePressed = true;
 	}
 
 	/**
@@ -1739,9 +1995,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
 	 */
 	@Override
 	public void mouseReleased(MouseEvent e) {
-		synchronized (mouseLock) {
-			mousePressed = false;
-		}
+		mousePressed = false;
 	}
 
 	/**
@@ -1749,10 +2003,8 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
 	 */
 	@Override
 	public void mouseDragged(MouseEvent e)  {
-		synchronized (mouseLock) {
-			mouseX = StdDraw.userX(e.getX());
-			mouseY = StdDraw.userY(e.getY());
-		}
+		mouseX = StdDraw.userX(e.getX());
+		mouseY = StdDraw.userY(e.getY());
 	}
 
 	/**
@@ -1760,10 +2012,8 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
 	 */
 	@Override
 	public void mouseMoved(MouseEvent e) {
-		synchronized (mouseLock) {
-			mouseX = StdDraw.userX(e.getX());
-			mouseY = StdDraw.userY(e.getY());
-		}
+		mouseX = StdDraw.userX(e.getX());
+		mouseY = StdDraw.userY(e.getY());
 	}
 
 
@@ -1778,9 +2028,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
 	 *         by {@link #nextKeyTyped()}; {@code false} otherwise
 	 */
 	public static boolean hasNextKeyTyped() {
-		synchronized (keyLock) {
-			return !keysTyped.isEmpty();
-		}
+		return !keysTyped.isEmpty();
 	}
 
 	/**
@@ -1796,12 +2044,12 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
 	 * @throws NoSuchElementException if there is no remaining key
 	 */
 	public static char nextKeyTyped() {
-		synchronized (keyLock) {
-			if (keysTyped.isEmpty()) {
-				throw new NoSuchElementException("your program has already processed all keystrokes");
-			}
-			return keysTyped.removeLast();
+		if (keysTyped.isEmpty()) {
+			throw new NoSuchElementException("your program has already processed all keystrokes");
 		}
+		char c = (char) keysTyped.peekA();
+		keysTyped.remove();
+		return c;
 	}
 
 	/**
@@ -1817,9 +2065,8 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
 	 *         {@code false} otherwise
 	 */
 	public static boolean isKeyPressed(int keycode) {
-		synchronized (keyLock) {
-			return keysDown.contains(keycode);
-		}
+		if (keycode < 0 || keycode >= KEY_CODES) return false;
+		return (keysDown.get(keycode >>> 6) & (1L << (keycode & 63))) != 0;
 	}
 
 
@@ -1828,9 +2075,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
 	 */
 	@Override
 	public void keyTyped(KeyEvent e) {
-		synchronized (keyLock) {
-			keysTyped.addFirst(e.getKeyChar());
-		}
+		enqueueKeyTyped(e.getKeyChar());
 	}
 
 	/**
@@ -1838,9 +2083,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
 	 */
 	@Override
 	public void keyPressed(KeyEvent e) {
-		synchronized (keyLock) {
-			keysDown.add(e.getKeyCode());
-		}
+		setKeyDown(e.getKeyCode(), true);
 	}
 
 	/**
@@ -1848,9 +2091,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
 	 */
 	@Override
 	public void keyReleased(KeyEvent e) {
-		synchronized (keyLock) {
-			keysDown.remove(e.getKeyCode());
-		}
+		setKeyDown(e.getKeyCode(), false);
 	}
 
 
@@ -0,0 +1,362 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+ * Endgame databases: the exact game-theoretic value (win, loss or
+ * draw, and the number of plies to the end) of every position with
+ * few pieces on the board, computed once by retrograde analysis and
+ * then looked up instead of searched.
+ *
+ * Positions are grouped by material signature (dark men, dark kings,
+ * light men, light kings). Each signature has a table with one byte
+ * per index, where the index is built from the combinatorial rank of
+ * each piece group plus the side to move. Men are ranked over the 28
+ * squares they can stand on without being crowned.
+ *
+ * Table values, from the point of view of the side to move:
+ *
+ *     0         draw
+ *     d > 0     win in d plies
+ *     -(d + 1)  loss in d plies (-1 means no legal move: lost now)
+ *
+ * Generation works through the signatures so that every table a move
+ * can lead to (after a capture or a crowning) is finished first. Within
+ * a signature, pass d resolves exactly the positions that are won or
+ * lost in d plies, so distances are exact; whatever is still open once
+ * no pass can change anything is a draw.
+ *
+ * The file is a header, a directory of signatures and offsets, and the
+ * tables. It is read through a read-only memory mapping, so probing
+ * costs a page-cache lookup and processes share one copy.
+ *
+ * Usage:
+ *     java Tablebase [maxPieces] [file]
+ */
+public class Tablebase {
+
+	/** Value returned by probe() for positions not in the database */
+	public static final int UNKNOWN = Integer.MIN_VALUE;
+
+	private static final int MAGIC = 0x434B5442; // "CKTB"
+	private static final int VERSION = 1;
+	// largest distance that fits in a table byte
+	static final int MAX_PLIES = 126;
+	// marks indices that do not describe a position (overlapping pieces)
+	private static final byte INVALID = Byte.MIN_VALUE;
+	private static final int MAN_SQUARES = 28;
+
+	static final int[][] BINOMIAL = new int[Position.SQUARES + 1][Position.SQUARES + 1];
+	static {
+		for (int n=0; n<=Position.SQUARES; n++) {
+			BINOMIAL[n][0] = 1;
+			for (int k=1; k<=n; k++) {
+				BINOMIAL[n][k] = BINOMIAL[n-1][k-1] + (k <= n-1 ? BINOMIAL[n-1][k] : 0);
+			}
+		}
+	}
+
+	private final int maxPieces;
+	private final MappedByteBuffer data;
+	// offset of each signature's table in data, indexed by signature, -1 if not in the file
+	private final int[] offsets;
+
+	private Tablebase(int maxPieces, MappedByteBuffer data, int[] offsets) {
+		this.maxPieces = maxPieces;
+		this.data = data;
+		this.offsets = offsets;
+	}
+
+	/** Largest number of pieces covered */
+	public int maxPieces() {
+		return maxPieces;
+	}
+
+	public static boolean isWin(int value) {
+		return value != UNKNOWN && value > 0;
+	}
+
+	public static boolean isLoss(int value) {
+		return value != UNKNOWN && value < 0;
+	}
+
+	public static boolean isDraw(int value) {
+		return value == 0;
+	}
+
+	/** Plies until the game ends with best play, for a win or loss value */
+	public static int plies(int value) {
+		return value > 0 ? value : -value - 1;
+	}
+
+	/**
+	 * Look up a position.
+	 * @return its table value, or UNKNOWN if it has too many pieces
+	 */
+	public int probe(Position p) {
+		if (Integer.bitCount(p.dark | p.light) > maxPieces || p.dark == 0 || p.light == 0) return UNKNOWN;
+		int sig = signature(p);
+		int offset = offsets[sig];
+		if (offset < 0) return UNKNOWN;
+		return data.get(offset + index(p, sig));
+	}
+
+	/*
+	 * Indexing.
+	 */
+
+	// counts packed 4 bits each: dark men, dark kings, light men, light kings
+	static int signature(int darkMen, int darkKings, int lightMen, int lightKings) {
+		return darkMen | (darkKings << 4) | (lightMen << 8) | (lightKings << 12);
+	}
+
+	static int signature(Position p) {
+		return signature(Integer.bitCount(p.dark & ~p.kings), Integer.bitCount(p.dark & p.kings),
+				Integer.bitCount(p.light & ~p.kings), Integer.bitCount(p.light & p.kings));
+	}
+
+	private static int count(int sig, int group) {
+		return (sig >> (group * 4)) & 15;
+	}
+
+	/** Number of table entries for a signature */
+	static int size(int sig) {
+		long size = 2L * BINOMIAL[MAN_SQUARES][count(sig, 0)] * BINOMIAL[Position.SQUARES][count(sig, 1)]
+				* BINOMIAL[MAN_SQUARES][count(sig, 2)] * BINOMIAL[Position.SQUARES][count(sig, 3)];
+		if (size > Integer.MAX_VALUE) throw new IllegalArgumentException("table too large for signature " + Integer.toHexString(sig));
+		return (int) size;
+	}
+
+	// colex rank of the set bits of mask
+	private static int rank(int mask) {
+		int r = 0, i = 1;
+		while (mask != 0) {
+			r += BINOMIAL[Integer.numberOfTrailingZeros(mask)][i++];
+			mask &= mask - 1;
+		}
+		return r;
+	}
+
+	// inverse of rank for k bits among n squares
+	private static int unrank(int r, int k, int n) {
+		int mask = 0;
+		for (int i=k; i>0; i--) {
+			int sq = n - 1;
+			while (BINOMIAL[sq][i] > r) sq--;
+			r -= BINOMIAL[sq][i];
+			mask |= 1 << sq;
+		}
+		return mask;
+	}
+
+	static int index(Position p, int sig) {
+		int darkMen = p.dark & ~p.kings, lightMen = (p.light & ~p.kings) >>> 4;
+		int index = rank(darkMen);
+		index = index * BINOMIAL[Position.SQUARES][count(sig, 1)] + rank(p.dark & p.kings);
+		index = index * BINOMIAL[MAN_SQUARES][count(sig, 2)] + rank(lightMen);
+		index = index * BINOMIAL[Position.SQUARES][count(sig, 3)] + rank(p.light & p.kings);
+		return (index << 1) | (p.darkToMove ? 0 : 1);
+	}
+
+	// fill p from an index; false if the index puts two pieces on one square
+	static boolean decode(int index, int sig, Position p) {
+		boolean darkToMove = (index & 1) == 0;
+		index >>>= 1;
+		int n = BINOMIAL[Position.SQUARES][count(sig, 3)];
+		int lightKings = unrank(index % n, count(sig, 3), Position.SQUARES);
+		index /= n;
+		n = BINOMIAL[MAN_SQUARES][count(sig, 2)];
+		int lightMen = unrank(index % n, count(sig, 2), MAN_SQUARES) << 4;
+		index /= n;
+		n = BINOMIAL[Position.SQUARES][count(sig, 1)];
+		int darkKings = unrank(index % n, count(sig, 1), Position.SQUARES);
+		index /= n;
+		int darkMen = unrank(index, count(sig, 0), MAN_SQUARES);
+		if ((darkMen & darkKings) != 0 || ((darkMen | darkKings) & (lightMen | lightKings)) != 0
+				|| (lightMen & lightKings) != 0)
+			return false;
+		p.dark = darkMen | darkKings;
+		p.light = lightMen | lightKings;
+		p.kings = darkKings | lightKings;
+		p.darkToMove = darkToMove;
+		p.hash = 0; // not needed for generation
+		return true;
+	}
+
+	/*
+	 * Generation.
+	 */
+
+	/**
+	 * Build the databases for every signature with up to maxPieces
+	 * pieces and write them to a file.
+	 */
+	public static void generate(int maxPieces, File file) throws IOException {
+		if (maxPieces < 2 || maxPieces > 15) throw new IllegalArgumentException("piece count out of range: " + maxPieces);
+		List<Integer> signatures = signatures(maxPieces);
+		Map<Integer, byte[]> tables = new HashMap<Integer, byte[]>();
+		for (int sig : signatures) {
+			long start = System.nanoTime();
+			byte[] table = solve(sig, tables);
+			tables.put(sig, table);
+			System.out.println("signature " + describe(sig) + ": " + table.length + " entries in "
+					+ (System.nanoTime() - start) / 1000000 + " ms");
+		}
+		write(file, maxPieces, signatures, tables);
+	}
+
+	// every signature with both sides present, ordered so dependencies come first
+	static List<Integer> signatures(int maxPieces) {
+		List<Integer> result = new ArrayList<Integer>();
+		for (int dm=0; dm<=maxPieces; dm++)
+			for (int dk=0; dm+dk<=maxPieces; dk++)
+				for (int lm=0; dm+dk+lm<=maxPieces; lm++)
+					for (int lk=0; dm+dk+lm+lk<=maxPieces; lk++)
+						if (dm + dk > 0 && lm + lk > 0)
+							result.add(signature(dm, dk, lm, lk));
+		// captures lower the piece count, crowning lowers the man count
+		result.sort(Comparator.comparingInt((Integer s) -> pieces(s)).thenComparingInt(s -> count(s, 0) + count(s, 2)));
+		return result;
+	}
+
+	private static int pieces(int sig) {
+		return count(sig, 0) + count(sig, 1) + count(sig, 2) + count(sig, 3);
+	}
+
+	private static String describe(int sig) {
+		return count(sig, 0) + "m" + count(sig, 1) + "k v " + count(sig, 2) + "m" + count(sig, 3) + "k";
+	}
+
+	// retrograde passes over one signature, given the finished tables it depends on
+	private static byte[] solve(int sig, Map<Integer, byte[]> tables) {
+		int size = size(sig);
+		byte[] table = new byte[size];
+		Position p = new Position(), child = new Position();
+		int[] moves = new int[MoveGenerator.BUFFER_SIZE];
+		for (int i=0; i<size; i++) {
+			if (!decode(i, sig, p)) table[i] = INVALID;
+		}
+		// index/value pairs settled in the current pass, applied once the pass is over
+		int[] pending = new int[1024];
+		int deepestDependency = 0;
+		for (byte[] t : tables.values()) {
+			for (byte v : t) {
+				if (v != 0) deepestDependency = Math.max(deepestDependency, plies(v));
+			}
+		}
+
+		for (int d=0; d<=MAX_PLIES; d++) {
+			int settled = 0;
+			for (int i=0; i<size; i++) {
+				if (table[i] != 0) continue;
+				decode(i, sig, p);
+				int n = MoveGenerator.generate(p, moves);
+				int value = 0;
+				if (n == 0) {
+					value = -1; // only ever reached in pass 0
+				} else {
+					int minLoss = Integer.MAX_VALUE, maxWin = -1;
+					boolean allWins = true;
+					for (int m=0; m<n; m++) {
+						child.copyFrom(p);
+						child.apply(moves[m * Move.WIDTH], moves[m * Move.WIDTH + 1]);
+						int v = childValue(child, sig, table, tables);
+						if (v < 0) {
+							minLoss = Math.min(minLoss, plies(v));
+							allWins = false;
+						} else if (v > 0) {
+							maxWin = Math.max(maxWin, plies(v));
+						} else {
+							allWins = false;
+						}
+					}
+					// the quickest win, or the slowest loss, takes exactly d plies
+					if (minLoss == d - 1) value = d;
+					else if (allWins && maxWin == d - 1) value = -(d + 1);
+				}
+				if (value != 0) {
+					if (settled + 2 > pending.length) pending = Arrays.copyOf(pending, pending.length * 2);
+					pending[settled++] = i;
+					pending[settled++] = value;
+				}
+			}
+			for (int j=0; j<settled; j+=2) {
+				table[pending[j]] = (byte) pending[j + 1];
+			}
+			if (settled == 0 && d > deepestDependency) break;
+			if (d == MAX_PLIES && settled > 0)
+				System.out.println("warning: " + describe(sig) + " has lines longer than " + MAX_PLIES + " plies, scored as draws");
+		}
+		for (int i=0; i<size; i++) {
+			if (table[i] == INVALID) table[i] = 0;
+		}
+		return table;
+	}
+
+	// value of a position reached by one move, from the side to move's point of view
+	private static int childValue(Position child, int sig, byte[] table, Map<Integer, byte[]> tables) {
+		// the last piece was captured: no move, lost
+		if ((child.darkToMove ? child.dark : child.light) == 0) return -1;
+		int childSig = signature(child);
+		byte[] t = childSig == sig ? table : tables.get(childSig);
+		if (t == null) throw new IllegalStateException("table " + describe(childSig) + " needed before " + describe(sig));
+		return t[index(child, childSig)];
+	}
+
+	/*
+	 * File format and probing.
+	 */
+
+	private static void write(File file, int maxPieces, List<Integer> signatures, Map<Integer, byte[]> tables) throws IOException {
+		int headerSize = 16 + signatures.size() * 8;
+		ByteBuffer header = ByteBuffer.allocate(headerSize);
+		header.putInt(MAGIC).putInt(VERSION).putInt(maxPieces).putInt(signatures.size());
+		int offset = headerSize;
+		for (int sig : signatures) {
+			header.putInt(sig).putInt(offset);
+			offset += tables.get(sig).length;
+		}
+		header.flip();
+		try (FileChannel out = new RandomAccessFile(file, "rw").getChannel()) {
+			out.truncate(0);
+			out.write(header);
+			for (int sig : signatures) {
+				out.write(ByteBuffer.wrap(tables.get(sig)));
+			}
+		}
+	}
+
+	/**
+	 * Open a database file for probing.
+	 * @throws IOException if the file is missing or not a database
+	 */
+	public static Tablebase open(File file) throws IOException {
+		try (FileChannel in = new RandomAccessFile(file, "r").getChannel()) {
+			if (in.size() > Integer.MAX_VALUE) throw new IOException(file + " is too large to map");
+			// the mapping stays valid after the channel is closed
+			MappedByteBuffer data = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+			if (data.getInt(0) != MAGIC) throw new IOException(file + " is not an endgame database");
+			if (data.getInt(4) != VERSION) throw new IOException(file + " has unsupported version " + data.getInt(4));
+			int maxPieces = data.getInt(8), count = data.getInt(12);
+			// a signature is four 4-bit counts, so a plain array covers them all
+			int[] offsets = new int[1 << 16];
+			Arrays.fill(offsets, -1);
+			for (int i=0; i<count; i++) {
+				int sig = data.getInt(16 + i * 8);
+				if (sig < 0 || sig >= offsets.length) throw new IOException(file + " has a bad signature " + sig);
+				offsets[sig] = data.getInt(20 + i * 8);
+			}
+			return new Tablebase(maxPieces, data, offsets);
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		int maxPieces = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		File file = new File(args.length > 1 ? args[1] : "endgame.db");
+		long start = System.nanoTime();
+		generate(maxPieces, file);
+		System.out.println("wrote " + file + " (" + file.length() + " bytes) in "
+				+ (System.nanoTime() - start) / 1000000 + " ms");
+	}
+}
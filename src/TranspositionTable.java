@@ -0,0 +1,122 @@
+/**
+ * A fixed-size hash table of search results, keyed by Zobrist hash.
+ * When the search reaches a position it has already searched through
+ * a different move order, the stored score and best move let it skip
+ * or shorten the work.
+ *
+ * Entries live in two parallel long arrays, so the table is a couple
+ * of large primitive allocations no matter how many positions it
+ * holds. Each bucket has two slots: the first keeps the deepest
+ * result seen (depth-preferred), the second always takes the newest
+ * one, so shallow results still get cached without evicting
+ * expensive deep ones.
+ *
+ * The table can be shared by several search threads without locks.
+ * Each slot stores its key XORed with its data word; a reader only
+ * accepts an entry if key ^ data gives back the key it looked for, so
+ * a slot torn by two threads writing at once reads as a miss instead
+ * of as another position's result.
+ *
+ * An entry's data word packs the best move, bound type, depth and
+ * score:
+ *
+ *     bits  0-9   best move (from/to in the Move encoding)
+ *     bits 10-11  bound: EXACT, LOWER or UPPER
+ *     bits 12-19  depth
+ *     bits 32-63  score
+ */
+public class TranspositionTable {
+
+	/** Bound types: the score is exact, at least, or at most the stored value */
+	public static final int EXACT = 1;
+	public static final int LOWER = 2;
+	public static final int UPPER = 3;
+
+	// bytes per bucket: two slots of key + data
+	private static final int BUCKET_BYTES = 32;
+
+	private final long[] keys;
+	private final long[] data;
+	private final int mask;
+
+	/**
+	 * Construct a table using at most the given amount of memory.
+	 * @param megabytes memory cap; the bucket count is the largest power of 2 that fits
+	 */
+	public TranspositionTable(int megabytes) {
+		if (megabytes <= 0) throw new IllegalArgumentException("table size must be positive: " + megabytes);
+		long buckets = Long.highestOneBit((long) megabytes * 1024 * 1024 / BUCKET_BYTES);
+		// arrays are indexed by int, two slots per bucket
+		buckets = Math.min(buckets, 1 << 29);
+		keys = new long[(int) buckets * 2];
+		data = new long[(int) buckets * 2];
+		mask = (int) buckets - 1;
+	}
+
+	/** Forget every entry, e.g. before a new game */
+	public void clear() {
+		java.util.Arrays.fill(keys, 0);
+		java.util.Arrays.fill(data, 0);
+	}
+
+	/**
+	 * Look up a position.
+	 * @return the entry's data word, or 0 if the position is not stored
+	 */
+	public long probe(long key) {
+		int slot = ((int) key & mask) << 1;
+		// read each word once, another thread may be rewriting the slot
+		long d = data[slot];
+		if (d != 0 && (keys[slot] ^ d) == key) return d;
+		d = data[slot + 1];
+		if (d != 0 && (keys[slot + 1] ^ d) == key) return d;
+		return 0;
+	}
+
+	/**
+	 * Store a search result.
+	 * @param key Zobrist key of the position
+	 * @param move best move found, in the Move encoding (from/to only)
+	 * @param bound EXACT, LOWER or UPPER
+	 * @param depth remaining depth the score was searched to
+	 * @param score score from the side to move's point of view
+	 */
+	public void store(long key, int move, int bound, int depth, int score) {
+		long entry = pack(move, bound, depth, score);
+		int slot = ((int) key & mask) << 1;
+		// keep the deeper result in the first slot, or replace it with the same position
+		long d = data[slot];
+		if ((keys[slot] ^ d) == key || depth >= depth(d)) {
+			keys[slot] = key ^ entry;
+			data[slot] = entry;
+		} else {
+			keys[slot + 1] = key ^ entry;
+			data[slot + 1] = entry;
+		}
+	}
+
+	static long pack(int move, int bound, int depth, int score) {
+		return (move & 1023) | ((long) bound << 10) | ((long) (depth & 255) << 12) | ((long) score << 32);
+	}
+
+	public static int move(long entry) {
+		return (int) entry & 1023;
+	}
+
+	public static int bound(long entry) {
+		return (int) (entry >>> 10) & 3;
+	}
+
+	public static int depth(long entry) {
+		return (int) (entry >>> 12) & 255;
+	}
+
+	public static int score(long entry) {
+		return (int) (entry >> 32);
+	}
+
+	/** Number of entries the table can hold */
+	public int capacity() {
+		return keys.length;
+	}
+}
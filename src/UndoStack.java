@@ -0,0 +1,38 @@
+/**
+ * Undo records for Position.make() and Position.unmake(), kept on a
+ * stack that is allocated once. With it a search walks the game tree
+ * on a single Position, making a move on the way down and taking it
+ * back on the way up, instead of copying the position at every node.
+ *
+ * A record is five ints: the move in the Move encoding, the mask of
+ * the captured squares, the kings mask from before the move (which
+ * tells which captured pieces were kings and whether the man that
+ * moved was crowned) and the Zobrist key from before the move, in two
+ * halves. Taking a move back then only moves the piece home and puts
+ * the captured ones back, with no hashing to undo.
+ */
+public final class UndoStack {
+
+	static final int WIDTH = 5;
+
+	final int[] records;
+	int size; // records on the stack
+
+	/**
+	 * Construct a stack for a number of moves made one on top of another.
+	 * @param capacity deepest line of moves it can take back
+	 */
+	public UndoStack(int capacity) {
+		records = new int[capacity * WIDTH];
+	}
+
+	/** Number of moves that can be taken back */
+	public int size() {
+		return size;
+	}
+
+	/** Forget every record, e.g. to start a new search */
+	public void clear() {
+		size = 0;
+	}
+}
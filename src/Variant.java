@@ -0,0 +1,327 @@
+/**
+ * A set of rules for draughts on the 8x8 board: how pieces move and
+ * capture, and so which moves are legal in a Position. Game, Perft and
+ * the GameServer play any variant; the GUI and the search play checkers.
+ *
+ *     CHECKERS   men move and capture forward, kings one square at a
+ *                time; a man crowned mid-capture stops (MoveGenerator)
+ *     RUSSIAN    men capture backward too, kings fly; a man crowned
+ *                mid-capture jumps on as a king
+ *     BRAZILIAN  as Russian, but a man is only crowned if its move
+ *                ends on the far row, and the capture taking the most
+ *                pieces must be played
+ *     POOL       American pool: as Brazilian, without the majority rule
+ *
+ * A flying king moves any distance along an empty diagonal, and
+ * captures a piece any distance away, landing on any empty square
+ * beyond it. Captured pieces come off the board at the end of the
+ * move, so until then they block the way and cannot be jumped twice.
+ * A capture must go on while it can: a king landing after a capture
+ * must pick a square it can capture again from, if there is one.
+ *
+ * Each variant has its own generator, with its rules written into the
+ * code rather than looked up on every call. The board is always the
+ * 8x8 one of a Position: a variant changes the rules, not the
+ * geometry, so games on other boards, such as international draughts
+ * on 10x10, are not supported.
+ */
+public abstract class Variant {
+
+	/** Upper bound on the number of legal moves in any variant, flying kings included */
+	public static final int MAX_MOVES = 512;
+
+	/** Size of a move buffer able to hold MAX_MOVES moves */
+	public static final int BUFFER_SIZE = MAX_MOVES * Move.WIDTH;
+
+	public static final Variant CHECKERS = new Checkers();
+	public static final Variant RUSSIAN = new Russian();
+	public static final Variant BRAZILIAN = new Brazilian();
+	public static final Variant POOL = new Pool();
+
+	private static final Variant[] ALL = { CHECKERS, RUSSIAN, BRAZILIAN, POOL };
+
+	/** Every variant, checkers first */
+	public static Variant[] all() {
+		return ALL.clone();
+	}
+
+	/**
+	 * The variant with a name, ignoring case.
+	 * @throws IllegalArgumentException if there is no such variant
+	 */
+	public static Variant forName(String name) {
+		for (Variant v : ALL) {
+			if (v.name().equalsIgnoreCase(name)) return v;
+		}
+		throw new IllegalArgumentException("no such variant: " + name);
+	}
+
+	/**
+	 * The variant with a PDN GameType number.
+	 * @throws IllegalArgumentException if there is no such variant
+	 */
+	public static Variant forPdnGameType(int gameType) {
+		for (Variant v : ALL) {
+			if (v.pdnGameType() == gameType) return v;
+		}
+		throw new IllegalArgumentException("unsupported game type " + gameType);
+	}
+
+	/** Short name, e.g. "russian" */
+	public abstract String name();
+
+	/** The GameType tag of the variant in PDN */
+	public abstract int pdnGameType();
+
+	/**
+	 * Fill moves with every legal move for the side to move.
+	 * @param moves buffer of at least BUFFER_SIZE ints
+	 * @return number of moves written
+	 */
+	public abstract int generate(Position p, int[] moves);
+
+	/** Whether the side to move has any legal move */
+	public abstract boolean hasMoves(Position p);
+
+	public String toString() {
+		return name();
+	}
+
+	// English checkers, as played by MoveGenerator
+	private static final class Checkers extends Variant {
+		public String name() {
+			return "checkers";
+		}
+
+		public int pdnGameType() {
+			return 21;
+		}
+
+		public int generate(Position p, int[] moves) {
+			return MoveGenerator.generate(p, moves);
+		}
+
+		public boolean hasMoves(Position p) {
+			return MoveGenerator.hasMoves(p);
+		}
+	}
+
+	/**
+	 * Men that capture in all four directions and flying kings. What
+	 * happens to a man reaching the far row in the middle of a capture
+	 * is up to the variant; it is the only rule left open, and it only
+	 * comes up on the far row, away from the inner loops.
+	 */
+	private abstract static class FlyingKings extends Variant {
+
+		public int generate(Position p, int[] moves) {
+			int n = captures(p, moves);
+			if (n > 0) return n;
+			return steps(p, moves);
+		}
+
+		public boolean hasMoves(Position p) {
+			boolean dark = p.darkToMove;
+			int own = dark ? p.dark : p.light;
+			int opp = dark ? p.light : p.dark;
+			int empty = ~(p.dark | p.light);
+			// a king that cannot step has no room to fly either, so
+			// one-square steps and jumps tell whether any move exists
+			int up = dark ? own : own & p.kings;
+			int down = dark ? own & p.kings : own;
+			if (((MoveGenerator.upLeft(up) | MoveGenerator.upRight(up)
+					| MoveGenerator.downLeft(down) | MoveGenerator.downRight(down)) & empty) != 0) return true;
+			return ((MoveGenerator.upLeft(MoveGenerator.upLeft(own) & opp)
+					| MoveGenerator.upRight(MoveGenerator.upRight(own) & opp)
+					| MoveGenerator.downLeft(MoveGenerator.downLeft(own) & opp)
+					| MoveGenerator.downRight(MoveGenerator.downRight(own) & opp)) & empty) != 0;
+		}
+
+		// every complete capture for the side to move
+		int captures(Position p, int[] moves) {
+			boolean dark = p.darkToMove;
+			int own = dark ? p.dark : p.light;
+			int opp = dark ? p.light : p.dark;
+			int empty = ~(p.dark | p.light);
+			int n = 0;
+			while (own != 0) {
+				int from = Integer.numberOfTrailingZeros(own);
+				own &= own - 1;
+				int bit = 1 << from;
+				// the capturing piece leaves its square, so it may land there again
+				if ((p.kings & bit) != 0) n = kingJumps(moves, n, n, from, from, 0, empty | bit, opp, false);
+				else n = manJumps(moves, n, n, from, from, 0, empty | bit, opp, dark);
+			}
+			return n;
+		}
+
+		// depth-first search of the captures of a man on square cur, in every direction
+		final int manJumps(int[] moves, int first, int n, int from, int cur, int captured,
+				int empty, int opp, boolean dark) {
+			boolean extended = false;
+			for (int d=0; d<4; d++) {
+				int over = Diagonals.step(cur, d);
+				if (over == Diagonals.NONE || (opp & ~captured & 1 << over) == 0) continue;
+				int to = Diagonals.jump(cur, d);
+				if (to == Diagonals.NONE || (empty & 1 << to) == 0) continue;
+				extended = true;
+				if ((1 << to & (dark ? Position.DARK_KING_ROW : Position.LIGHT_KING_ROW)) != 0) {
+					n = crownInCapture(moves, first, n, from, to, captured | 1 << over, empty, opp, dark);
+				} else {
+					n = manJumps(moves, first, n, from, to, captured | 1 << over, empty, opp, dark);
+				}
+			}
+			if (!extended && captured != 0) n = CaptureResolver.add(moves, first, n, Move.encode(from, cur), captured);
+			return n;
+		}
+
+		// a man lands on the far row with a capture, which may go on
+		abstract int crownInCapture(int[] moves, int first, int n, int from, int to, int captured,
+				int empty, int opp, boolean dark);
+
+		// depth-first search of the captures of a flying king on square cur
+		final int kingJumps(int[] moves, int first, int n, int from, int cur, int captured,
+				int empty, int opp, boolean crowned) {
+			boolean extended = false;
+			for (int d=0; d<4; d++) {
+				// the first piece along the diagonal, if it is one to take
+				int over = Diagonals.step(cur, d);
+				while (over != Diagonals.NONE && (empty & 1 << over) != 0) over = Diagonals.step(over, d);
+				if (over == Diagonals.NONE || (opp & ~captured & 1 << over) == 0) continue;
+				int taken = captured | 1 << over;
+				int nearest = Diagonals.step(over, d);
+				if (nearest == Diagonals.NONE || (empty & 1 << nearest) == 0) continue;
+				extended = true;
+				// land where the capture can go on, anywhere beyond if it cannot
+				boolean onward = false;
+				for (int to = nearest; to != Diagonals.NONE && (empty & 1 << to) != 0; to = Diagonals.step(to, d)) {
+					if (kingCanCapture(to, taken, empty, opp)) {
+						onward = true;
+						break;
+					}
+				}
+				for (int to = nearest; to != Diagonals.NONE && (empty & 1 << to) != 0; to = Diagonals.step(to, d)) {
+					if (!onward || kingCanCapture(to, taken, empty, opp))
+						n = kingJumps(moves, first, n, from, to, taken, empty, opp, crowned);
+				}
+			}
+			if (!extended && captured != 0) {
+				n = CaptureResolver.add(moves, first, n, Move.encode(from, cur) | (crowned ? Move.CROWNED : 0), captured);
+			}
+			return n;
+		}
+
+		// whether a flying king on square cur has a capture, given what it has taken
+		static boolean kingCanCapture(int cur, int captured, int empty, int opp) {
+			for (int d=0; d<4; d++) {
+				int over = Diagonals.step(cur, d);
+				while (over != Diagonals.NONE && (empty & 1 << over) != 0) over = Diagonals.step(over, d);
+				if (over == Diagonals.NONE || (opp & ~captured & 1 << over) == 0) continue;
+				int to = Diagonals.step(over, d);
+				if (to != Diagonals.NONE && (empty & 1 << to) != 0) return true;
+			}
+			return false;
+		}
+
+		// every move that captures nothing: men step forward, kings fly
+		static int steps(Position p, int[] moves) {
+			boolean dark = p.darkToMove;
+			int own = dark ? p.dark : p.light;
+			int empty = ~(p.dark | p.light);
+			int n = 0;
+			while (own != 0) {
+				int from = Integer.numberOfTrailingZeros(own);
+				own &= own - 1;
+				if ((p.kings & 1 << from) != 0) {
+					for (int d=0; d<4; d++) {
+						for (int to = Diagonals.step(from, d); to != Diagonals.NONE && (empty & 1 << to) != 0;
+								to = Diagonals.step(to, d)) {
+							moves[n * Move.WIDTH] = Move.encode(from, to);
+							moves[n * Move.WIDTH + 1] = 0;
+							n++;
+						}
+					}
+				} else {
+					int bit = 1 << from;
+					int targets = (dark ? MoveGenerator.upLeft(bit) | MoveGenerator.upRight(bit)
+							: MoveGenerator.downLeft(bit) | MoveGenerator.downRight(bit)) & empty;
+					while (targets != 0) {
+						int to = Integer.numberOfTrailingZeros(targets);
+						targets &= targets - 1;
+						moves[n * Move.WIDTH] = Move.encode(from, to);
+						moves[n * Move.WIDTH + 1] = 0;
+						n++;
+					}
+				}
+			}
+			return n;
+		}
+	}
+
+	// Russian draughts: a man crowned in a capture goes on as a flying king
+	private static final class Russian extends FlyingKings {
+		public String name() {
+			return "russian";
+		}
+
+		public int pdnGameType() {
+			return 25;
+		}
+
+		int crownInCapture(int[] moves, int first, int n, int from, int to, int captured,
+				int empty, int opp, boolean dark) {
+			return kingJumps(moves, first, n, from, to, captured, empty, opp, true);
+		}
+	}
+
+	// American pool checkers: a man crossing the far row in a capture goes on as a man
+	private static final class Pool extends FlyingKings {
+		public String name() {
+			return "pool";
+		}
+
+		public int pdnGameType() {
+			return 23;
+		}
+
+		int crownInCapture(int[] moves, int first, int n, int from, int to, int captured,
+				int empty, int opp, boolean dark) {
+			return manJumps(moves, first, n, from, to, captured, empty, opp, dark);
+		}
+	}
+
+	// Brazilian draughts: pool plus the majority rule
+	private static final class Brazilian extends FlyingKings {
+		public String name() {
+			return "brazilian";
+		}
+
+		public int pdnGameType() {
+			return 26;
+		}
+
+		int crownInCapture(int[] moves, int first, int n, int from, int to, int captured,
+				int empty, int opp, boolean dark) {
+			return manJumps(moves, first, n, from, to, captured, empty, opp, dark);
+		}
+
+		public int generate(Position p, int[] moves) {
+			int n = captures(p, moves);
+			if (n == 0) return steps(p, moves);
+			// keep only the captures that take the most pieces
+			int most = 0;
+			for (int i=0; i<n; i++) {
+				most = Math.max(most, Integer.bitCount(moves[i * Move.WIDTH + 1]));
+			}
+			int kept = 0;
+			for (int i=0; i<n; i++) {
+				if (Integer.bitCount(moves[i * Move.WIDTH + 1]) == most) {
+					moves[kept * Move.WIDTH] = moves[i * Move.WIDTH];
+					moves[kept * Move.WIDTH + 1] = moves[i * Move.WIDTH + 1];
+					kept++;
+				}
+			}
+			return kept;
+		}
+	}
+}
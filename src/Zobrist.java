@@ -0,0 +1,65 @@
+import java.util.Random;
+
+/**
+ * Zobrist hashing for checkers positions. Every (piece kind, square)
+ * pair gets a fixed random 64-bit number, and the key of a position
+ * is the XOR of the numbers of its pieces, plus one more number when
+ * light is to move. Moving a piece only XORs out its old square and
+ * XORs in its new one, so keys are kept up to date incrementally
+ * instead of being recomputed.
+ *
+ * Position keeps its own key up to date this way in apply(), and the
+ * search and Game key everything with it; the GUI board plays through
+ * Game, so it needs no key of its own.
+ */
+public final class Zobrist {
+
+	// not instantiable
+	private Zobrist() { }
+
+	// piece kinds, used as the first index of PIECES
+	static final int DARK_MAN = 0;
+	static final int DARK_KING = 1;
+	static final int LIGHT_MAN = 2;
+	static final int LIGHT_KING = 3;
+
+	/** Random numbers per piece kind and square */
+	static final long[][] PIECES = new long[4][Position.SQUARES];
+	/** Random number XORed in when light is to move */
+	static final long LIGHT_TO_MOVE;
+
+	static {
+		// fixed seed so keys are stable between runs and processes
+		Random rnd = new Random(0x5EEDC0DEL);
+		for (long[] kind : PIECES) {
+			for (int sq=0; sq<kind.length; sq++) {
+				kind[sq] = rnd.nextLong();
+			}
+		}
+		LIGHT_TO_MOVE = rnd.nextLong();
+	}
+
+	static int kind(boolean dark, boolean king) {
+		return dark ? (king ? DARK_KING : DARK_MAN) : (king ? LIGHT_KING : LIGHT_MAN);
+	}
+
+	/** Full key of a position, computed from scratch */
+	public static long hash(Position p) {
+		long key = p.darkToMove ? 0 : LIGHT_TO_MOVE;
+		key ^= hashMask(PIECES[DARK_MAN], p.dark & ~p.kings);
+		key ^= hashMask(PIECES[DARK_KING], p.dark & p.kings);
+		key ^= hashMask(PIECES[LIGHT_MAN], p.light & ~p.kings);
+		key ^= hashMask(PIECES[LIGHT_KING], p.light & p.kings);
+		return key;
+	}
+
+	// XOR of the numbers for every square in mask
+	static long hashMask(long[] numbers, int mask) {
+		long key = 0;
+		while (mask != 0) {
+			key ^= numbers[Integer.numberOfTrailingZeros(mask)];
+			mask &= mask - 1;
+		}
+		return key;
+	}
+}